@@ -0,0 +1,55 @@
+package arena;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time taken by a full step of the arena (every robot senses, thinks and
+ * moves) followed by the physics updates up to the next step, with
+ * Simulator's default schedule.  Each iteration starts from the snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xss8m", "-Xmx1524M" })
+@State(Scope.Thread)
+public class ArenaStepBench {
+
+	@Param({ "4", "16", "64" })
+	public int nRobots;
+
+	@Param({ "40", "400", "4000" })
+	public int nPucks;
+
+	BenchFixture fixture;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fixture = new BenchFixture(nRobots, nPucks);
+	}
+
+	@Setup(Level.Iteration)
+	public void restore() {
+		fixture.restore();
+	}
+
+	@Benchmark
+	public int step() {
+		for (int u = 0; u < PuckSwarmTest.STEP_INTERVAL; u++)
+			fixture.update();
+		return fixture.arena.getStepCount();
+	}
+}
@@ -0,0 +1,96 @@
+package arena;
+
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+
+import experiment.Experiment;
+import experiment.ExperimentManager;
+
+/**
+ * The arena shared by the JMH benchmarks in this directory.  The arena is
+ * created from the experiment's seed with the given numbers of robots and
+ * pucks, and run (with thinking) for SETTLE_STEPS steps so that the robots
+ * have moved and their local maps and controllers are populated.  The state
+ * of every body is then recorded, and 'restore' returns the world to it, so
+ * that each measurement iteration starts from the same snapshot however many
+ * steps the previous one ran.  The robots' controllers are not restored.
+ *
+ * The enclosure is scaled with the number of bodies so that thousands of
+ * pucks fit (and robots are not packed together) while the density stays
+ * close to that of a typical experiment.
+ */
+public class BenchFixture {
+
+	// Steps run before the snapshot is taken.
+	public static int SETTLE_STEPS = 30;
+
+	public World world;
+	public Arena arena;
+
+	// Position, angle and velocities of each body, in the order of the
+	// world's body list.
+	private float[] snapshot;
+
+	private int updateCount;
+
+	public BenchFixture(int nRobots, int nPucks) {
+		Experiment e = ExperimentManager.getCurrent();
+		e.setProperty("Arena.nRobots", "" + nRobots);
+		e.setProperty("Arena.nPucks", "" + nPucks);
+		e.setProperty("Arena.metricsInterval", "0");
+		e.setProperty("controllerType", "CacheCons");
+		e.setProperty("RoundedRectangleEnclosure.scale", "" + getScale(nRobots, nPucks));
+		e.resetRandom();
+
+		world = new World(new Vec2(0, 0), false);
+		arena = new Arena(world, null, false);
+		for (int u = 0; u < SETTLE_STEPS * PuckSwarmTest.STEP_INTERVAL; u++)
+			update();
+
+		snapshot = new float[6 * world.getBodyCount()];
+		int i = 0;
+		for (Body b = world.getBodyList(); b != null; b = b.getNext()) {
+			snapshot[i++] = b.getPosition().x;
+			snapshot[i++] = b.getPosition().y;
+			snapshot[i++] = b.getAngle();
+			snapshot[i++] = b.getLinearVelocity().x;
+			snapshot[i++] = b.getLinearVelocity().y;
+			snapshot[i++] = b.getAngularVelocity();
+		}
+	}
+
+	/**
+	 * Return the scale of the enclosure, which is 187 units wide at scale 1.
+	 * Scale 1 suits up to 4 robots and 100 pucks.
+	 */
+	public static float getScale(int nRobots, int nPucks) {
+		return (float) Math.max(1, Math.sqrt(nPucks / 100.0 + nRobots / 4.0 - 1));
+	}
+
+	/**
+	 * Perform one physics update, as Simulator does with its default settings.
+	 */
+	public void update() {
+		if (updateCount % PuckSwarmTest.STEP_INTERVAL == 0)
+			arena.step(true, true, true, false, 0, false);
+		else
+			arena.coast(true, true, true);
+		updateCount++;
+		world.step(1/14f, 3, 100);
+	}
+
+	/**
+	 * Return every body to the state recorded after settling.
+	 */
+	public void restore() {
+		int i = 0;
+		for (Body b = world.getBodyList(); b != null; b = b.getNext()) {
+			b.setTransform(new Vec2(snapshot[i], snapshot[i + 1]), snapshot[i + 2]);
+			b.setLinearVelocity(new Vec2(snapshot[i + 3], snapshot[i + 4]));
+			b.setAngularVelocity(snapshot[i + 5]);
+			i += 6;
+		}
+		arena.getBodyGrid().rebuild(world);
+	}
+}
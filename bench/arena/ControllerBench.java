@@ -0,0 +1,54 @@
+package arena;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time taken by CacheConsController.computeDesired for one robot, given
+ * the local map sensed at the snapshot.  The robots are called in turn and
+ * their controllers keep their state from one call to the next, as in a run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xss8m", "-Xmx1524M" })
+@State(Scope.Thread)
+public class ControllerBench {
+
+	@Param({ "16" })
+	public int nRobots;
+
+	@Param({ "400" })
+	public int nPucks;
+
+	BenchFixture fixture;
+	int next, stepCount;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fixture = new BenchFixture(nRobots, nPucks);
+		stepCount = fixture.arena.getStepCount();
+	}
+
+	@Benchmark
+	public Object computeDesired() {
+		Robot robot = fixture.arena.robots.get(next++ % fixture.arena.robots.size());
+		if (next % fixture.arena.robots.size() == 0)
+			stepCount++;
+		robot.controller.computeDesired(robot.simSuite, stepCount);
+		return robot.controller;
+	}
+}
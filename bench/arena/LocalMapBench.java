@@ -0,0 +1,117 @@
+package arena;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import localmap.Cluster;
+import localmap.LocalMap;
+
+import org.jbox2d.common.Vec2;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sensors.BlobFinder;
+import sensors.PuckPalette;
+import sensors.SensedType;
+import sensors.STCameraImage;
+
+/**
+ * The time taken by LocalMap.update on the robots' images of the snapshot,
+ * and by the two stages which can be called on their own: finding blobs and
+ * extracting clusters (here from all pucks in the arena, to load it more
+ * heavily than a single image does).  The time spent in each stage of
+ * 'update' is also reported, as the total nanoseconds per iteration (divide
+ * by 'updates').
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xss8m", "-Xmx1524M" })
+@State(Scope.Thread)
+public class LocalMapBench {
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class StageTimes {
+		public long updates, occupancyNanos, pucksNanos, clustersNanos, filterNanos;
+
+		@Setup(Level.Iteration)
+		public void clear() {
+			updates = occupancyNanos = pucksNanos = clustersNanos = filterNanos = 0;
+		}
+	}
+
+	@Param({ "4" })
+	public int nRobots;
+
+	@Param({ "40", "400", "4000" })
+	public int nPucks;
+
+	BenchFixture fixture;
+	LocalMap[] localMaps;
+	STCameraImage[] images;
+	BlobFinder blobFinder;
+	PuckPalette palette;
+	ArrayList<ArrayList<Vec2>> puckPositions = new ArrayList<ArrayList<Vec2>>();
+	ArrayList<Cluster> clusters = new ArrayList<Cluster>();
+	int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fixture = new BenchFixture(nRobots, nPucks);
+		Arena arena = fixture.arena;
+		localMaps = new LocalMap[arena.robots.size()];
+		images = new STCameraImage[arena.robots.size()];
+		for (int r = 0; r < arena.robots.size(); r++) {
+			localMaps[r] = arena.robots.get(r).simSuite.getLocalMap();
+			images[r] = arena.robots.get(r).simSuite.getCameraImage();
+		}
+		blobFinder = new BlobFinder(images[0].width, images[0].height);
+
+		palette = arena.getPalette();
+		for (int k = 0; k < palette.size(); k++)
+			puckPositions.add(new ArrayList<Vec2>());
+		for (Puck puck : arena.pucks)
+			puckPositions.get(SensedType.getPuckIndex(puck.getPuckType())).add(puck.body.getPosition().clone());
+	}
+
+	@Benchmark
+	public Object update(StageTimes stageTimes) {
+		int r = next++ % localMaps.length;
+		localMaps[r].update(images[r]);
+		long[] times = localMaps[r].getStageTimes();
+		stageTimes.updates++;
+		stageTimes.occupancyNanos += times[0];
+		stageTimes.pucksNanos += times[1];
+		stageTimes.clustersNanos += times[2];
+		stageTimes.filterNanos += times[3];
+		return localMaps[r].getFilteredClusters();
+	}
+
+	@Benchmark
+	public Object findBlobs() {
+		STCameraImage image = images[next++ % images.length];
+		blobFinder.findBlobs(image, palette.getTypes(), 0, image.width-1, 0, image.height-1);
+		return blobFinder.getBlobs(0);
+	}
+
+	@Benchmark
+	public Object extractClusters() {
+		clusters.clear();
+		for (int k = 0; k < puckPositions.size(); k++)
+			LocalMap.extractClusters(puckPositions.get(k), k, clusters);
+		return clusters;
+	}
+}
@@ -0,0 +1,66 @@
+package arena;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time taken by PositionList.save and load for the puck positions of
+ * the snapshot, written to a temporary file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xss8m", "-Xmx1524M" })
+@State(Scope.Thread)
+public class PositionListBench {
+
+	@Param({ "4" })
+	public int nRobots;
+
+	@Param({ "40", "400", "4000" })
+	public int nPucks;
+
+	PositionList positions = new PositionList();
+	String filename;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BenchFixture fixture = new BenchFixture(nRobots, nPucks);
+		for (Puck puck : fixture.arena.pucks)
+			positions.add(puck.body.getPosition().clone());
+		File file = File.createTempFile("positions", ".txt");
+		filename = file.getPath();
+		positions.save(filename);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		new File(filename).delete();
+	}
+
+	@Benchmark
+	public void save() {
+		positions.save(filename);
+	}
+
+	@Benchmark
+	public PositionList load() {
+		return PositionList.load(filename);
+	}
+}
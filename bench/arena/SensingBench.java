@@ -0,0 +1,89 @@
+package arena;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.jbox2d.common.Vec2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sensors.Calibration;
+import sensors.Calibration.CalibDataPerPixel;
+import sensors.GridCamera;
+import sensors.PointSensor;
+
+/**
+ * The time taken to form one robot's camera image, by GridCamera.sense and
+ * by applying a PointSensor at every calibrated pixel.  Each call senses for
+ * the next robot in turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xss8m", "-Xmx1524M" })
+@State(Scope.Thread)
+public class SensingBench {
+
+	@Param({ "4" })
+	public int nRobots;
+
+	@Param({ "40", "400", "4000" })
+	public int nPucks;
+
+	BenchFixture fixture;
+	GridCamera[] cameras;
+	PointSensor[][] sensors;
+	int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fixture = new BenchFixture(nRobots, nPucks);
+		Arena arena = fixture.arena;
+		cameras = new GridCamera[arena.robots.size()];
+		sensors = new PointSensor[arena.robots.size()][];
+		for (int r = 0; r < arena.robots.size(); r++) {
+			Robot robot = arena.robots.get(r);
+			cameras[r] = new GridCamera(robot.body, arena);
+			Calibration calib = cameras[r].getImage().getCalibration();
+			ArrayList<PointSensor> list = new ArrayList<PointSensor>();
+			for (int y = 0; y < calib.getImageHeight(); y++)
+				for (int x = 0; x < calib.getImageWidth(); x++) {
+					CalibDataPerPixel pixelCalib = calib.getCalibData(x, y);
+					if (pixelCalib != null && !pixelCalib.gripperBody)
+						list.add(new PointSensor(new Vec2(pixelCalib.Xr, pixelCalib.Yr), robot.body, arena));
+				}
+			sensors[r] = list.toArray(new PointSensor[list.size()]);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void restore() {
+		fixture.restore();
+	}
+
+	@Benchmark
+	public Object gridCameraSense() {
+		GridCamera camera = cameras[next++ % cameras.length];
+		camera.sense();
+		return camera.getImage();
+	}
+
+	@Benchmark
+	public Object pointSensorSense() {
+		PointSensor[] robotSensors = sensors[next++ % sensors.length];
+		for (PointSensor sensor : robotSensors)
+			sensor.sense();
+		return robotSensors[0].getSensedType();
+	}
+}
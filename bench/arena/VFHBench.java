@@ -0,0 +1,65 @@
+package arena;
+
+import java.util.concurrent.TimeUnit;
+
+import localmap.LocalMap;
+import localmap.VFHPlus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time taken by VFHPlus.computeTurnAngle, with and without the
+ * incremental update of the primary histogram.  A single VFHPlus is given
+ * the robots' local maps in turn so that the occupancy grid changes between
+ * calls, as it does when a robot moves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xss8m", "-Xmx1524M" })
+@State(Scope.Thread)
+public class VFHBench {
+
+	@Param({ "16" })
+	public int nRobots;
+
+	@Param({ "400" })
+	public int nPucks;
+
+	@Param({ "true", "false" })
+	public boolean incremental;
+
+	LocalMap[] localMaps;
+	VFHPlus vfh;
+	int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchFixture fixture = new BenchFixture(nRobots, nPucks);
+		localMaps = new LocalMap[fixture.arena.robots.size()];
+		for (int r = 0; r < localMaps.length; r++)
+			localMaps[r] = fixture.arena.robots.get(r).simSuite.getLocalMap();
+		vfh = new VFHPlus(localMaps[0], true);
+		VFHPlus.INCREMENTAL_PRIMARY = incremental;
+	}
+
+	@Benchmark
+	public Float computeTurnAngle() {
+		int call = next++;
+		boolean ignorePucks = (call / localMaps.length) % 2 == 0;
+		float targetAngle = (float) Math.sin(call * 0.1);
+		return vfh.computeTurnAngle(localMaps[call % localMaps.length], targetAngle, ignorePucks);
+	}
+}
@@ -2,19 +2,29 @@ package analysis;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import sensors.SensedType;
 import utils.DataTableUtils;
 import utils.FileUtils;
 import utils.RunningStats;
+import arena.ConvergenceMonitor;
 import arena.PositionList;
+import arena.TrajectoryReader;
+import arena.TrajectoryWriter;
 import de.erichseifert.gral.data.DataTable;
 
 /**
- * Take the stored puck position lists (in .txt files) and do the same extraction of clusters 
+ * Take the stored puck positions (from the trajectory.bin file of each repetition, or
+ * from per-step .txt files if there is none) and do the same extraction of clusters 
  * as in LocalMap then compute various measures and statistics.  Data on the experiments
  * is extracted from .properties files in the results directory.  Then compute the statistics on
  * cluster sizes and store the results.  The following files comprise the output:
@@ -22,7 +32,15 @@ import de.erichseifert.gral.data.DataTable;
  * - Files named 'METHOD__avg.csv' which presents results averaged over all trials.
  * - Files named 'METHOD__stepsToCompletion.csv' which gives the number of steps
  *    required to reach TARGET_PERCENT_COMPLETION for each trial.
+ * Trials which were ended early because the task had converged (as recorded
+ * in their convergence.txt) are taken to hold their final completion until
+ * the end of the longest trial.  Any other trial with fewer rows than the
+ * longest is reported as an error and its experiment is skipped.
  * 
+ * The repetitions are read in parallel, on one worker thread per processor
+ * unless otherwise specified.  Usage:
+ * 
+ *     Analyze [-w nWorkers] ANALYZE_DIR REPETITIONS
  */
 public class Analyze {
 	
@@ -32,15 +50,35 @@ public class Analyze {
 	public static final float TARGET_PERCENT_COMPLETION = 50f;
 	private static final char SLASH = File.separatorChar;
 	
-	@SuppressWarnings("unchecked")
-	public static void main(String[] args) {
+	/**
+	 * The maximum cluster size for each puck colour at each stored step of one
+	 * repetition.  This is all that is needed from the stored positions.
+	 */
+	private static class Repetition {
+		// The step of each row, as found for colour 0.
+		int[] stepCounts;
+		double[][] maxClusterSize;
+
+		// True if the repetition's ConvergenceMonitor ended it early because
+		// the task had converged.
+		boolean converged;
+	}
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
 		
-		if (args.length != 2) {
-			System.err.println("Two arguments required: ANALYZE_DIR (String) and REPETITIONS (int)");
+		int nWorkers = Runtime.getRuntime().availableProcessors();
+		int a = 0;
+		if (args.length >= 2 && args[0].equals("-w")) {
+			nWorkers = Integer.valueOf(args[1]);
+			a = 2;
+		}
+		if (args.length - a != 2) {
+			System.err.println("Two arguments required: ANALYZE_DIR (String) and REPETITIONS (int).  " +
+					"These may be preceded by '-w nWorkers' to set the number of worker threads.");
 			System.exit(-1);
 		}
-		ANALYZE_DIR = args[0];
-		REPETITIONS = Integer.valueOf(args[1]);
+		ANALYZE_DIR = args[a];
+		REPETITIONS = Integer.valueOf(args[a + 1]);
 		System.out.println("\nanalyzing: " + ANALYZE_DIR);
 		
 		// Get a list of all .properties files (each one corresponding to an
@@ -72,94 +110,156 @@ public class Analyze {
 		System.out.println("Found repetitions: " + foundRepetitions);
 		System.out.println("Using repetitions: " + REPETITIONS);
 		
-		// For each experiment (i.e. each code), repetition index, and colour create a table
-		// and fill with appropriate statistics.
-		
-		for (Properties experiment : experiments) {
-			processExperiment(experiment);
-			
-		} // code
-	}
+		// Every repetition of every experiment (i.e. each code) is read on the
+		// pool of workers.  The ensemble statistics for each experiment are
+		// then computed and stored in order as its repetitions complete.
+		ExecutorService workers = Executors.newFixedThreadPool(nWorkers);
+		int nExperiments = experiments.size();
+		String[] codes = new String[nExperiments];
+		int[] nPucks = new int[nExperiments];
+		ArrayList<Future<Repetition>> futures = new ArrayList<Future<Repetition>>();
+		for (int e=0; e<nExperiments; e++) {
+			// Extract the code and nPucks and nPuckTypes from the properties file.
+			Properties properties = experiments.get(e);
+			codes[e] = "";
+			int nPuckTypes = 0;
+			try {
+				codes[e] = properties.getProperty("code");
+				nPucks[e] = Integer.valueOf(properties.getProperty("Arena.nPucks"));
+				nPuckTypes = Integer.valueOf(properties.getProperty("Arena.nPuckTypes"));			
+				
+			} catch (Exception ex) {
+				System.err.println("Analyze: Problem loading needed properties");
+			}
 
-	private static void processExperiment(Properties properties) {
-		// Extract the code and nPucks and nPuckTypes from the properties file.
-		String code = "";
-		int nPucks = 0, nPuckTypes = 0;
-		try {
-			code = properties.getProperty("code");
-			nPucks = Integer.valueOf(properties.getProperty("Arena.nPucks"));
-			nPuckTypes = Integer.valueOf(properties.getProperty("Arena.nPuckTypes"));			
-			
-		} catch (Exception e) {
-			System.err.println("Analyze: Problem loading needed properties");
+			for (int i=0; i<REPETITIONS; i++) {
+				final String code = codes[e];
+				final int index = i, n = nPuckTypes;
+				futures.add(workers.submit(new Callable<Repetition>() {
+					public Repetition call() {
+						return readRepetition(code, index, n);
+					}
+				}));
+			}
 		}
-			
-		System.out.print("code: " + code + "\t\t");
-		//System.out.println("nPucks: " + nPucks);
-		//System.out.println("nPuckTypes: " + nPuckTypes);
-		
-		DataTable[][] tables = new DataTable[REPETITIONS][nPuckTypes];
-		for (int i=0; i<REPETITIONS; i++)
-			tables[i] = new DataTable[nPuckTypes];
-					
-		for (int i=0; i<REPETITIONS; i++) {
-			for (int k=0; k<nPuckTypes; k++)
-				fillTable(code, tables, i, k, SensedType.getPuckColorName(k));
-		} // i
-		
-		//storeAverageTable(tables, ANALYZE_DIR + File.separatorChar + code + "__avg_" + colorName + ".csv");
 		
-		computeEnsembleData(code, tables, REPETITIONS, nPucks);
+		for (int e=0; e<nExperiments; e++) {
+			System.out.print("code: " + codes[e] + "\t\t");
+			Repetition[] repetitions = new Repetition[REPETITIONS];
+			for (int i=0; i<REPETITIONS; i++)
+				repetitions[i] = futures.get(e * REPETITIONS + i).get();
+			computeEnsembleData(codes[e], repetitions, REPETITIONS, nPucks[e]);
+			
+		} // code
+		workers.shutdown();
 	}
 
-	@SuppressWarnings("unchecked")
-	private static void fillTable(String code, DataTable[][] tables,
-			int i, int k, String colorName) {
+	private static Repetition readRepetition(String code, int i, int nPuckTypes) {
 		
 		String dirName = ANALYZE_DIR + SLASH + code + SLASH + i;
+		Repetition repetition = new Repetition();
+		repetition.maxClusterSize = new double[nPuckTypes][];
+		repetition.converged = readConverged(dirName);
 		
-		tables[i][k] = new DataTable(Integer.class,    // stepCount 
-								    Integer.class, 	// number of clusters
-								    Double.class, 	// mean cluster size
-								    Double.class, 	// std. cluster size
-								    Double.class, 	// min cluster size
-								    Double.class);	// max cluster size
+		// Use the trajectory file if there is one.
+		if (new File(dirName + SLASH + TrajectoryWriter.FILENAME).exists()) {
+			TrajectoryReader reader = new TrajectoryReader(dirName + SLASH + TrajectoryWriter.FILENAME);
+			int nRecords = reader.getRecordCount();
+			for (int k=0; k<nPuckTypes; k++) {
+				boolean found = false;
+				for (int e=0; e<reader.getEntityCount(); e++)
+					if (reader.getType(e) == k)
+						found = true;
+				int[] stepCounts = new int[found ? nRecords : 0];
+				repetition.maxClusterSize[k] = new double[stepCounts.length];
+				for (int r=0; r<stepCounts.length; r++) {
+					stepCounts[r] = reader.getStep(r);
+					repetition.maxClusterSize[k][r] = getMaxClusterSize(PositionList.read(reader, r, k));
+				}
+				if (k == 0)
+					repetition.stepCounts = stepCounts;
+			}
+			return repetition;
+		}
 
-		// Now go through all completed text files in order of stepCount.
-		ArrayList<String> txtFiles = FileUtils.getMatchedFilenames("step\\d*_" + colorName + "_pucks.txt", dirName);
-		Collections.sort(txtFiles);
-		for (String txtFile : txtFiles) {
-			int stepInStr = txtFile.indexOf("step");
-			int stepCount = Integer.valueOf(txtFile.substring(stepInStr + 4, stepInStr + 11));
-			
-			PositionList list = PositionList.load(dirName + SLASH + txtFile);
-			RunningStats stats = list.getClusterStats();
-			if (stats == null)
-				tables[i][k].add(stepCount, 0, 0., 0., 0., 0.);
-			else
-				tables[i][k].add(stepCount, stats.getNumberOfValues(), stats.getMean(), stats.getStandardDeviation(), stats.getMin(), stats.getMax());
+		// Otherwise go through all completed text files in order of stepCount.
+		for (int k=0; k<nPuckTypes; k++) {
+			String colorName = SensedType.getPuckColorName(k);
+			ArrayList<String> txtFiles = FileUtils.getMatchedFilenames("step\\d*_" + colorName + "_pucks.txt", dirName);
+			Collections.sort(txtFiles);
+			int[] stepCounts = new int[txtFiles.size()];
+			repetition.maxClusterSize[k] = new double[txtFiles.size()];
+			for (int r=0; r<txtFiles.size(); r++) {
+				String txtFile = txtFiles.get(r);
+				int stepInStr = txtFile.indexOf("step");
+				stepCounts[r] = Integer.valueOf(txtFile.substring(stepInStr + 4, stepInStr + 11));
+				
+				repetition.maxClusterSize[k][r] = getMaxClusterSize(PositionList.load(dirName + SLASH + txtFile));
+			}
+			if (k == 0)
+				repetition.stepCounts = stepCounts;
+		}
+		return repetition;
+	}
+
+	/**
+	 * Return true if the repetition stored in the given directory records
+	 * that it was ended early because the task had converged.
+	 */
+	private static boolean readConverged(String dirName) {
+		File file = new File(dirName + SLASH + ConvergenceMonitor.FILENAME);
+		if (!file.exists())
+			return false;
+		try {
+			Properties properties = new Properties();
+			FileInputStream in = new FileInputStream(file);
+			properties.load(in);
+			in.close();
+			return Boolean.valueOf(properties.getProperty("converged"));
+		} catch (IOException e) {
+			System.err.println("Analyze: Problem loading: " + file);
+			return false;
 		}
-		/*
-		if (txtFiles.size() > 0) {
-			DataTableUtils.storeTable(ANALYZE_DIR + File.separatorChar + code + "__" + i + "_" + colorName + ".csv", tables[i]);
-			System.out.println("completed repetition " + i + ": " + code);
-		} else
-			missingData = true;
-		*/
+	}
+
+	private static double getMaxClusterSize(PositionList list) {
+		RunningStats stats = list.getClusterStats();
+		if (stats == null)
+			return 0.;
+		else
+			return stats.getMax();
 	}
 
 	@SuppressWarnings("unchecked")
-	private static void computeEnsembleData(String code, DataTable[][] tables,
+	private static void computeEnsembleData(String code, Repetition[] data,
 			int repetitions, int nPucks) {
 		
-		// Check that all tables have the same number of rows.
-		int nRows = tables[0][0].getRowCount();
-		for (int i=0; i<repetitions; i++)
-			for (int k=0; k<tables[i].length; k++)
-				if (tables[i][k] != null && tables[i][k].getRowCount() != nRows) {
+		// Check that the tables of each repetition have the same number of
+		// rows.  Repetitions which were ended early because the task had
+		// converged (see ConvergenceMonitor) have fewer rows than the longest,
+		// and are taken to hold their last completion for the remaining rows.
+		// Any other repetition which is short (e.g. one which crashed or is
+		// still running) is an error.
+		int[] nRepRows = new int[repetitions];
+		int longest = 0;
+		for (int i=0; i<repetitions; i++) {
+			nRepRows[i] = data[i].maxClusterSize[0].length;
+			for (int k=0; k<data[i].maxClusterSize.length; k++)
+				if (data[i].maxClusterSize[k].length != nRepRows[i] || nRepRows[i] == 0) {
 					System.err.println("Analyze: Not all tables have an equal number of rows!");
 					return;
 				}
+			if (nRepRows[i] > nRepRows[longest])
+				longest = i;
+		}
+		int nRows = nRepRows[longest];
+		int[] stepCounts = data[longest].stepCounts;
+		for (int i=0; i<repetitions; i++)
+			if (nRepRows[i] < nRows && !data[i].converged) {
+				System.err.println("Analyze: Repetition " + i + " of " + code + " has " + nRepRows[i]
+						+ " rows rather than " + nRows + " but did not converge!");
+				return;
+			}
 		
 		// Create individual per-repetition (per-i) tables to hold ensemble data.
 		DataTable[] ensembleTables = new DataTable[repetitions];
@@ -185,15 +285,14 @@ public class Analyze {
 		double[] timeWeightedCompletion = new double[repetitions];
 		
 		for (int row=0; row<nRows; row++) {			
-			int stepCount = tables[0][0].get(0, row).intValue();
+			int stepCount = stepCounts[row];
 			double avgPercentCompletion = 0;
 
 			for (int i=0; i<repetitions; i++) {
+				int repRow = Math.min(row, nRepRows[i] - 1);
 				double sumMaxClusterSize = 0;
-				for (int k=0; k<tables[i].length; k++) {
-					if (tables[i][k] != null)
-						sumMaxClusterSize += tables[i][k].get(5, row).doubleValue();
-				}
+				for (int k=0; k<data[i].maxClusterSize.length; k++)
+					sumMaxClusterSize += data[i].maxClusterSize[k][repRow];
 				double percentCompletion = 100.0 * sumMaxClusterSize / nPucks;
 				
 				ensembleTables[i].add(stepCount, percentCompletion);
@@ -211,7 +310,7 @@ public class Analyze {
 		// Normalize timeWeightedCompletion.
 		double twcNormalizer = 0;
 		for (int row=0; row<nRows; row++) {			
-			int stepCount = tables[0][0].get(0, row).intValue();
+			int stepCount = stepCounts[row];
 			twcNormalizer += stepCount;
 		}
 		for (int i=0; i<repetitions; i++)
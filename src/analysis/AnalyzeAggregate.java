@@ -5,6 +5,11 @@ import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jbox2d.common.MathUtils;
 
@@ -27,6 +32,10 @@ import de.erichseifert.gral.data.DataTable;
  * - Files named 'METHOD__stepsToCompletion.csv' which gives the number of steps
  *    required to reach TARGET_PERCENT_COMPLETION for each trial.
  * 
+ * The repetitions are read in parallel, on one worker thread per processor
+ * unless otherwise specified.  Usage:
+ * 
+ *     AnalyzeAggregate [-w nWorkers] ANALYZE_DIR REPETITIONS
  */
 public class AnalyzeAggregate {
 	
@@ -36,15 +45,31 @@ public class AnalyzeAggregate {
 	public static final float TARGET_PERCENT_COMPLETION = 100f;
 	private static final char SLASH = File.separatorChar;
 	
-	@SuppressWarnings("unchecked")
-	public static void main(String[] args) {
+	/**
+	 * The maximum cluster size for each puck colour and the total distance
+	 * between robots at each stored step of one repetition.
+	 */
+	private static class Repetition {
+		int[] stepCounts;
+		double[][] maxClusterSize;
+		double[] totalDistance;
+	}
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
 		
-		if (args.length != 2) {
-			System.err.println("Two arguments required: ANALYZE_DIR (String) and REPETITIONS (int)");
+		int nWorkers = Runtime.getRuntime().availableProcessors();
+		int a = 0;
+		if (args.length >= 2 && args[0].equals("-w")) {
+			nWorkers = Integer.valueOf(args[1]);
+			a = 2;
+		}
+		if (args.length - a != 2) {
+			System.err.println("Two arguments required: ANALYZE_DIR (String) and REPETITIONS (int).  " +
+					"These may be preceded by '-w nWorkers' to set the number of worker threads.");
 			System.exit(-1);
 		}
-		ANALYZE_DIR = args[0];
-		REPETITIONS = Integer.valueOf(args[1]);
+		ANALYZE_DIR = args[a];
+		REPETITIONS = Integer.valueOf(args[a + 1]);
 		System.out.println("\nanalyzing: " + ANALYZE_DIR);
 		
 		// Get a list of all .properties files (each one corresponding to an
@@ -78,101 +103,96 @@ public class AnalyzeAggregate {
 		*/
 		System.out.println("Using repetitions: " + REPETITIONS);
 		
-		// For each experiment (i.e. each code), repetition index, and colour create a table
-		// and fill with appropriate statistics.
-		
-		for (Properties experiment : experiments) {
-			processExperiment(experiment);
-			
-		} // code
-	}
+		// Every repetition of every experiment (i.e. each code) is read on the
+		// pool of workers.  The ensemble statistics for each experiment are
+		// then computed and stored in order as its repetitions complete.
+		ExecutorService workers = Executors.newFixedThreadPool(nWorkers);
+		int nExperiments = experiments.size();
+		String[] codes = new String[nExperiments];
+		int[] nPucks = new int[nExperiments];
+		ArrayList<Future<Repetition>> futures = new ArrayList<Future<Repetition>>();
+		for (int e=0; e<nExperiments; e++) {
+			// Extract the code and nPucks and nPuckTypes from the properties file.
+			Properties properties = experiments.get(e);
+			codes[e] = "";
+			int nPuckTypes = 0;
+			try {
+				codes[e] = properties.getProperty("code");
+				nPucks[e] = Integer.valueOf(properties.getProperty("Arena.nPucks"));
+				nPuckTypes = Integer.valueOf(properties.getProperty("Arena.nPuckTypes"));			
+				
+			} catch (Exception ex) {
+				System.err.println("Analyze: Problem loading needed properties");
+			}
 
-	private static void processExperiment(Properties properties) {
-		// Extract the code and nPucks and nPuckTypes from the properties file.
-		String code = "";
-		int nPucks = 0, nPuckTypes = 0;
-		try {
-			code = properties.getProperty("code");
-			nPucks = Integer.valueOf(properties.getProperty("Arena.nPucks"));
-			nPuckTypes = Integer.valueOf(properties.getProperty("Arena.nPuckTypes"));			
-			
-		} catch (Exception e) {
-			System.err.println("Analyze: Problem loading needed properties");
+			for (int i=0; i<REPETITIONS; i++) {
+				final String code = codes[e];
+				final int index = i, n = nPuckTypes;
+				futures.add(workers.submit(new Callable<Repetition>() {
+					public Repetition call() {
+						return readRepetition(code, index, n);
+					}
+				}));
+			}
 		}
-			
-		System.out.print("code: " + code + "\t\t");
-		//System.out.println("nPucks: " + nPucks);
-		//System.out.println("nPuckTypes: " + nPuckTypes);
-		
-		DataTable[][] tables = new DataTable[REPETITIONS][nPuckTypes];
-		for (int i=0; i<REPETITIONS; i++)
-			tables[i] = new DataTable[nPuckTypes];
-					
-		for (int i=0; i<REPETITIONS; i++) {
-			for (int k=0; k<nPuckTypes; k++)
-				fillTable(code, tables, i, k, SensedType.getPuckColorName(k));
-		} // i
 		
-		//storeAverageTable(tables, ANALYZE_DIR + File.separatorChar + code + "__avg_" + colorName + ".csv");
-		
-		computeEnsembleData(code, tables, REPETITIONS, nPucks);
+		for (int e=0; e<nExperiments; e++) {
+			System.out.print("code: " + codes[e] + "\t\t");
+			Repetition[] repetitions = new Repetition[REPETITIONS];
+			for (int i=0; i<REPETITIONS; i++)
+				repetitions[i] = futures.get(e * REPETITIONS + i).get();
+			computeEnsembleData(codes[e], repetitions, REPETITIONS, nPucks[e]);
+			
+		} // code
+		workers.shutdown();
 	}
 
-	@SuppressWarnings("unchecked")
-	private static void fillTable(String code, DataTable[][] tables,
-			int i, int k, String colorName) {
+	private static Repetition readRepetition(String code, int i, int nPuckTypes) {
 		
 		String dirName = ANALYZE_DIR + SLASH + code + SLASH + i;
-		
-		tables[i][k] = new DataTable(Integer.class,    // stepCount 
-								    Integer.class, 	// number of clusters
-								    Double.class, 	// mean cluster size
-								    Double.class, 	// std. cluster size
-								    Double.class, 	// min cluster size
-								    Double.class,	// max cluster size
-								    	Double.class);   // total distance between robots (for aggregation)
 
-		// Now go through all completed text files in order of stepCount.
+		// Now go through all completed text files in order of stepCount.  The
+		// same files hold the positions for every colour, so each is read once.
 //		ArrayList<String> txtFiles = FileUtils.getMatchedFilenames("step\\d*_" + colorName + "_pucks.txt", dirName);
 		ArrayList<String> txtFiles = FileUtils.getMatchedFilenames("step\\d*_bots2d.txt", dirName);
 		Collections.sort(txtFiles);
-		for (String txtFile : txtFiles) {
+		int nRows = txtFiles.size();
+		Repetition repetition = new Repetition();
+		repetition.stepCounts = new int[nRows];
+		repetition.maxClusterSize = new double[nPuckTypes][nRows];
+		repetition.totalDistance = new double[nRows];
+		for (int row=0; row<nRows; row++) {
+			String txtFile = txtFiles.get(row);
 			int stepInStr = txtFile.indexOf("step");
-			int stepCount = Integer.valueOf(txtFile.substring(stepInStr + 4, stepInStr + 11));
+			repetition.stepCounts[row] = Integer.valueOf(txtFile.substring(stepInStr + 4, stepInStr + 11));
 			
 			PositionList list = PositionList.load(dirName + SLASH + txtFile);
 			RunningStats stats = list.getClusterStats();
 			
-			// Compute total distance
+			// Compute total distance (only that computed for colour 0 is used).
+			int k = 0;
 			double td = 0.0;
 			int n =  list.size();
 			for (int I = 0; I<n-1; I++)
 				for (int j= k+1; j<n; j++)
 					td += MathUtils.distance(list.get(I), list.get(j));
 			
-			if (stats == null)
-				tables[i][k].add(stepCount, 0, 0., 0., 0., 0., 0.);
-			else
-				tables[i][k].add(stepCount, stats.getNumberOfValues(), stats.getMean(), stats.getStandardDeviation(), stats.getMin(), stats.getMax(), td);
+			for (k=0; k<nPuckTypes; k++)
+				repetition.maxClusterSize[k][row] = stats == null ? 0. : stats.getMax();
+			repetition.totalDistance[row] = stats == null ? 0. : td;
 		}
-		/*
-		if (txtFiles.size() > 0) {
-			DataTableUtils.storeTable(ANALYZE_DIR + File.separatorChar + code + "__" + i + "_" + colorName + ".csv", tables[i]);
-			System.out.println("completed repetition " + i + ": " + code);
-		} else
-			missingData = true;
-		*/
+		return repetition;
 	}
 
 	@SuppressWarnings("unchecked")
-	private static void computeEnsembleData(String code, DataTable[][] tables,
+	private static void computeEnsembleData(String code, Repetition[] data,
 			int repetitions, int nPucks) {
 		
-		// Check that all tables have the same number of rows.
-		int nRows = tables[0][0].getRowCount();
+		// Check that all repetitions have the same number of rows.
+		int nRows = data[0].maxClusterSize[0].length;
 		for (int i=0; i<repetitions; i++)
-			for (int k=0; k<tables[i].length; k++)
-				if (tables[i][k] != null && tables[i][k].getRowCount() != nRows) {
+			for (int k=0; k<data[i].maxClusterSize.length; k++)
+				if (data[i].maxClusterSize[k].length != nRows) {
 					System.err.println("Analyze: Not all tables have an equal number of rows!");
 					return;
 				}
@@ -213,7 +233,7 @@ public class AnalyzeAggregate {
 		double[] timeAveragedTD = new double[repetitions];
 
 		for (int row=0; row<nRows; row++) {			
-			int stepCount = tables[0][0].get(0, row).intValue();
+			int stepCount = data[0].stepCounts[row];
 			double avgPercentCompletion = 0;
 			double avgTotalDistance = 0;
 
@@ -221,10 +241,8 @@ public class AnalyzeAggregate {
 				
 				// Compute percentage completion (PC)
 				double sumMaxClusterSize = 0;
-				for (int k=0; k<tables[i].length; k++) {
-					if (tables[i][k] != null)
-						sumMaxClusterSize += tables[i][k].get(5, row).doubleValue();
-				}
+				for (int k=0; k<data[i].maxClusterSize.length; k++)
+					sumMaxClusterSize += data[i].maxClusterSize[k][row];
 				double percentCompletion = 100.0 * sumMaxClusterSize / nPucks;
 				
 				// Add PC to the ensemble tables and average it
@@ -240,7 +258,7 @@ public class AnalyzeAggregate {
 				timeAveragedPC[i] += percentCompletion / 100.0;
 				
 				// Add TD to the ensemble tables and average it
-				double td = tables[i][0].get(6, row).doubleValue();
+				double td = data[i].totalDistance[row];
 				tdTables[i].add(stepCount, td);
 				avgTotalDistance += td;
 
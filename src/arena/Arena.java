@@ -4,6 +4,12 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.jbox2d.callbacks.DebugDraw;
 import org.jbox2d.common.Color3f;
@@ -12,10 +18,18 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.World;
 
+import localmap.LocalMap;
+import sensors.PuckPalette;
 import sensors.SensedType;
+import sensors.SimSuite;
+import utils.Histogram;
+import utils.Metrics;
+import utils.OutputWriter;
 import utils.RunningStats;
+import controllers.StatefulController;
 import experiment.Experiment;
 import experiment.ExperimentManager;
+import experiment.RandomStreams;
 
 public class Arena {
 	World world;
@@ -29,23 +43,118 @@ public class Arena {
 
 	public Enclosure enclosure;
 
-	Random rng = ExperimentManager.getCurrent().getRandom();
+	// Spatial index of all bodies, rebuilt at the start of each step for use
+	// by the robots' sensors.
+	BodyGrid bodyGrid = new BodyGrid();
+
+	// The experiment this arena was created for.
+	Experiment experiment = ExperimentManager.getCurrent();
+
+	Random rng;
+
+	// Number of threads on which the robots sense and think during each step
+	// (0 means one per available processor).
+	int nThreads;
+
+	// If true, the arena, its enclosure, each robot and each of a robot's
+	// components draw from their own keyed streams (see RandomStreams) rather
+	// than from the experiment's shared one.  This is implied when
+	// nThreads > 1.  A run with keyed streams gives identical results for any
+	// nThreads and whatever the order in which the robots are processed.
+	boolean perRobotRandom;
+
+	// The arena's node of the experiment's keyed streams, or null if the
+	// shared stream is used.
+	RandomStreams streams;
+
+	// Thread pool shared by all arenas for the sense/think phase.
+	private static ExecutorService executor;
+	private static int executorThreads;
+
+	// If true, the SimSuites of the robots of a disposed arena are kept and
+	// given to the robots of arenas created later, rather than allocating new
+	// cameras, local maps and blob buffers for each arena.  Each suite is
+	// reset before reuse, so the results are unchanged.  An arena must not be
+	// stepped once it has been disposed.
+	public static boolean RECYCLE = false;
+
+	// SimSuites awaiting reuse (see RECYCLE).  Shared by all threads.
+	private static ArrayList<SimSuite> suitePool = new ArrayList<SimSuite>();
+
+	// If true, pucks which have come to rest are put to sleep by the physics
+	// engine and skipped by it until something touches them.
+	boolean puckSleep;
+
+	// Counters and histograms of the time (in nanoseconds) spent in each
+	// phase of the simulation.  'sense' and 'think' are recorded per robot per
+	// step, the stages of LocalMap.update likewise, 'move' for applying all
+	// robots' commands (each step or coast) and 'output' for storing
+	// positions.  The time spent by the robots in each controller state is
+	// also counted.  A snapshot is written to METRICS_FILENAME in the
+	// experiment's output directory every metricsInterval steps (0 for never)
+	// and on disposal.
+	Metrics metrics = new Metrics();
+	Metrics.Counter stepCounter = metrics.getCounter("steps");
+	Histogram senseHistogram = metrics.getHistogram("sense");
+	Histogram thinkHistogram = metrics.getHistogram("think");
+	Histogram[] localMapHistograms = new Histogram[LocalMap.STAGE_NAMES.length];
+	Histogram moveHistogram = metrics.getHistogram("move");
+	Histogram outputHistogram = metrics.getHistogram("output");
+	int metricsInterval;
+
+	public static final String METRICS_FILENAME = "metrics.csv";
 
 	RunningStats carryingStats = new RunningStats();
 
 	boolean allowRobotDisplay;
 	public boolean showCamera;
 
+	// Used by SimSuite for positioning the robots' display JFrames.
+	public int suiteFrameY = 25;
+
 	public static int STORAGE_INTERVAL = 100;
 // STANDARD_REV:
 //	public static int STORAGE_INTERVAL = 1;
 
 	private static final char SLASH = File.separatorChar;
+
+	// Robot and puck positions are stored in a single binary trajectory file
+	// (see TrajectoryWriter).  If textTrajectories is set, they are also
+	// stored in the per-step text files used previously.  All output is
+	// written in the background by OutputWriter.
+	TrajectoryWriter trajectoryWriter;
+	boolean textTrajectories;
+
+	// Tracks the completion of the task at each storage step.
+	ConvergenceMonitor convergenceMonitor;
+
+	// The puck colours present in this arena.
+	PuckPalette palette;
 	
 	public Arena(World world, DebugDraw debugDraw, boolean allowRobotDisplay) {
 		this.world = world;
 		this.debugDraw = debugDraw;
 		this.allowRobotDisplay = allowRobotDisplay;
+
+		Experiment e = experiment;
+		nThreads = e.getProperty("Arena.nThreads", 1, null);
+		if (nThreads <= 0)
+			nThreads = Runtime.getRuntime().availableProcessors();
+		perRobotRandom = nThreads > 1 || e.getProperty("Arena.perRobotRandom", false, null);
+		textTrajectories = e.getProperty("Arena.textTrajectories", false, null);
+		puckSleep = e.getProperty("Arena.puckSleep", false, null);
+		metricsInterval = e.getProperty("Arena.metricsInterval", 1000, null);
+		palette = PuckPalette.create(e);
+		convergenceMonitor = new ConvergenceMonitor(e, palette);
+		for (int i = 0; i < localMapHistograms.length; i++)
+			localMapHistograms[i] = metrics.getHistogram("localMap." + LocalMap.STAGE_NAMES[i]);
+		if (perRobotRandom) {
+			streams = e.getStreams().getChild("Arena");
+			rng = streams.getRandom("Arena");
+		} else
+			rng = e.getRandom();
+		RandomStreams lastStreams = e.getThreadStreams();
+		e.setThreadStreams(streams);
 		
 		//enclosure = new OvalEnclosure(world);
 		enclosure = new RoundedRectangleEnclosure(world);
@@ -60,12 +169,7 @@ public class Arena {
 			// Create some randomly positioned initial pucks and robots.
 			int nPucks = ExperimentManager.getCurrent().getProperty(
 					"Arena.nPucks", 10, null);
-			int nPuckTypes = ExperimentManager.getCurrent().getProperty(
-					"Arena.nPuckTypes", 2, null);
-			if (nPuckTypes > SensedType.NPUCK_COLOURS) {
-				System.err.println("Arena: nPuckTypes too large!");
-				System.exit(-1);
-			}
+			int nPuckTypes = palette.size();
 			int nPucksPerType = nPucks / nPuckTypes;
 			float w = enclosure.getWidth();
 			
@@ -117,6 +221,11 @@ public class Arena {
 
 		// Set gravity to zero.
 		world.setGravity(new Vec2(0.0f, 0.0f));
+		if (puckSleep)
+			world.setAllowSleep(true);
+
+		bodyGrid.rebuild(world);
+		e.setThreadStreams(lastStreams);
 	}
 
 	// For placing some pucks in a grid configuration with one robot viewing
@@ -157,7 +266,10 @@ public class Arena {
 		} while (closestRobotDist < Puck.WIDTH);
 
 		float randAngle = (float) (2.0f * Math.PI * rng.nextFloat());
-		pucks.add(new DotPuck(pos.x, pos.y, randAngle, puckType, world, debugDraw));
+		Puck puck = new DotPuck(pos.x, pos.y, randAngle, puckType, world, debugDraw);
+		if (puckSleep)
+			puck.body.setSleepingAllowed(true);
+		pucks.add(puck);
 	}
 
 	public void createRobot(boolean presetCaches) {
@@ -182,7 +294,7 @@ public class Arena {
 
 	public void step(boolean allowThinking, boolean allowForwards, boolean allowTurning, boolean forcedMarch, int forcedTurn, boolean showCamera) {
 		this.showCamera = showCamera;
-		Experiment e = ExperimentManager.getCurrent();
+		Experiment e = experiment;
 		int puckShiftStep = e.getProperty("Arena.puckShiftStep", -1, null);
 		int puckShuffleStep = e.getProperty("Arena.puckShuffleStep", -1, null);
 		
@@ -190,17 +302,27 @@ public class Arena {
 			shiftPucksThroughCentre();
 		if (puckShuffleStep != -1 && stepCount % puckShuffleStep == 0)
 			shufflePucks();
+
+		bodyGrid.rebuild(world);
 		
 		// For experiments with object distribution
 		//distributionStep(e);
 		
-		for (Robot r : robots) {
-			r.sense();
-			if (allowThinking) {
-				r.think(stepCount);
+		// All robots sense and think.  This only reads the world and the
+		// robots' own state, so the robots can be spread over several threads.
+		if (nThreads > 1)
+			senseAndThinkInParallel(e, allowThinking);
+		else
+			for (Robot r : robots)
+				senseAndThink(r, e, allowThinking);
+		recordSenseAndThink(allowThinking);
+
+		// Now apply the robots' commands.  Forces only take effect in the
+		// next call to World.step, so sensing is unaffected by the order.
+		long start = System.nanoTime();
+		if (allowThinking)
+			for (Robot r : robots)
 				r.move(allowForwards, allowTurning);
-			}
-		}
 
 		if (forcedMarch) {
 			int dir = forcedTurn;
@@ -209,6 +331,7 @@ public class Arena {
 				dir *= -1;
 			}
 		}
+		moveHistogram.record(System.nanoTime() - start);
 		
 		// Count the number of robots carrying pucks
 		/*
@@ -221,25 +344,27 @@ public class Arena {
 		
 		// Store all robot and puck positions for later analysis.
 		if (ExperimentManager.isActive() && stepCount % Arena.STORAGE_INTERVAL == 0) {
-			String code = ExperimentManager.getCurrent().getStringCodeWithoutSeed();
-			int expIndex = ExperimentManager.getCurrent().getIndex();
-			String base = ExperimentManager.getOutputDir() + SLASH + 
-						code + SLASH +
-						expIndex + SLASH + 
-						"step" + Settings.getStepCountString(stepCount);
-
-			PoseList robotPoses = new PoseList();
-			for (Robot r : robots)
-				robotPoses.add(r.body.m_xf.position.x, r.body.m_xf.position.y, r.body.getAngle());
-			robotPoses.save(base + "_robots.txt");
-
-			for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
-				PositionList puckPositions = new PositionList();
-				for (Puck p : pucks)
-					if (SensedType.getPuckIndex(p.getPuckType()) == k)
-						puckPositions.add(p.body.m_xf.position.x, p.body.m_xf.position.y);
-				if (puckPositions.size() > 0)
-					puckPositions.save(base + "_" + SensedType.getPuckColorName(k) + "_pucks.txt");
+			start = System.nanoTime();
+			String base = getOutputDirName() + "step" + Settings.getStepCountString(stepCount);
+
+			if (trajectoryWriter == null)
+				createTrajectoryWriter(getOutputDirName());
+			storeTrajectory();
+
+			if (textTrajectories) {
+				PoseList robotPoses = new PoseList();
+				for (Robot r : robots)
+					robotPoses.add(r.body.m_xf.position.x, r.body.m_xf.position.y, r.body.getAngle());
+				robotPoses.saveLater(base + "_robots.txt");
+	
+				for (int k=0; k<palette.size(); k++) {
+					PositionList puckPositions = new PositionList();
+					for (Puck p : pucks)
+						if (SensedType.getPuckIndex(p.getPuckType()) == k)
+							puckPositions.add(p.body.m_xf.position.x, p.body.m_xf.position.y);
+					if (puckPositions.size() > 0)
+						puckPositions.saveLater(base + "_" + SensedType.getPuckColorName(k) + "_pucks.txt");
+				}
 			}
 			
 			// Save carryingStats.
@@ -261,9 +386,16 @@ boolean drawHomes = true;
 			if (drawHomes)
 				new SVGArenaPainter(base + "_homes.svg", this, flags | SVGArenaPainter.DRAW_HOMES, stepCount);
 			 */			
+			outputHistogram.record(System.nanoTime() - start);
 		}
+		if (stepCount % Arena.STORAGE_INTERVAL == 0)
+			convergenceMonitor.update(pucks, stepCount);
+
+		if (ExperimentManager.isActive() && metricsInterval > 0 && stepCount % metricsInterval == 0)
+			metrics.writeSnapshot(getOutputDirName() + METRICS_FILENAME, stepCount);
 
 		stepCount++;
+		stepCounter.increment();
 	}
 
 	// For experiments with object distribution
@@ -304,15 +436,134 @@ boolean drawHomes = true;
 	}
 	*/
 	
+	// Let robot 'r' sense and (if allowed) think, timing each, using its own random streams.
+	private void senseAndThink(Robot r, Experiment e, boolean allowThinking) {
+		e.setThreadStreams(r.streams);
+		long start = System.nanoTime();
+		r.sense();
+		long sensed = System.nanoTime();
+		r.senseTime = sensed - start;
+		if (allowThinking) {
+			r.think(stepCount);
+			r.thinkTime = System.nanoTime() - sensed;
+		}
+		e.setThreadStreams(null);
+	}
+
+	/**
+	 * Record the times taken by each robot to sense and think in this step,
+	 * and the state of its controller.  This is done once all robots are
+	 * finished, so the metrics are only ever updated by this thread.
+	 */
+	private void recordSenseAndThink(boolean allowThinking) {
+		for (Robot r : robots) {
+			senseHistogram.record(r.senseTime);
+			long[] stageTimes = r.simSuite.getLocalMap().getStageTimes();
+			for (int i = 0; i < localMapHistograms.length; i++)
+				localMapHistograms[i].record(stageTimes[i]);
+			if (allowThinking) {
+				thinkHistogram.record(r.thinkTime);
+				if (r.controller instanceof StatefulController)
+					metrics.recordState(((StatefulController) r.controller).getState());
+			}
+		}
+	}
+
+	private void senseAndThinkInParallel(final Experiment e, final boolean allowThinking) {
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(robots.size());
+		for (final Robot r : robots)
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					ExperimentManager.setThreadExperiment(e);
+					senseAndThink(r, e, allowThinking);
+					ExperimentManager.setThreadExperiment(null);
+					return null;
+				}
+			});
+
+		try {
+			for (Future<Object> f : getExecutor(nThreads).invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException ex) {
+			System.err.println("Arena: Interrupted during sense/think!");
+			System.exit(-1);
+		} catch (ExecutionException ex) {
+			System.err.println("Arena: Robot failed during sense/think!");
+			ex.getCause().printStackTrace();
+			System.exit(-1);
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor(int nThreads) {
+		if (executor == null || executorThreads != nThreads) {
+			if (executor != null)
+				executor.shutdown();
+			executor = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Arena");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executorThreads = nThreads;
+		}
+		return executor;
+	}
+
+	/**
+	 * Return the node of keyed random streams for the robot with the given
+	 * name, or null if the robots use the experiment's shared stream.
+	 */
+	RandomStreams createRobotStreams(String name) {
+		if (!perRobotRandom)
+			return null;
+		return streams.getChild(name);
+	}
+
+	/**
+	 * Return a SimSuite for a robot being created, reusing one released by a
+	 * disposed arena if RECYCLE is set.
+	 */
+	SimSuite createSimSuite(String name, Body body, boolean enableDisplay) {
+		if (RECYCLE && !enableDisplay) {
+			SimSuite suite = takeSuite();
+			if (suite != null) {
+				suite.reset(name, body, this);
+				return suite;
+			}
+		}
+		return new SimSuite(name, body, this, enableDisplay);
+	}
+
+	private static synchronized SimSuite takeSuite() {
+		if (suitePool.isEmpty())
+			return null;
+		return suitePool.remove(suitePool.size() - 1);
+	}
+
+	private static synchronized void releaseSuite(SimSuite suite) {
+		suite.release();
+		suitePool.add(suite);
+	}
+
+	/**
+	 * Return the number of SimSuites awaiting reuse.
+	 */
+	static synchronized int getSuitePoolSize() {
+		return suitePool.size();
+	}
+
 	/**
 	 * Just maintain the same robot forces and torques as set in the last call to step.
 	 */
 	public void coast(boolean allowThinking, boolean allowForwards, boolean allowTurning) {
+		long start = System.nanoTime();
 		for (Robot r : robots) {
 			if (allowThinking) {
 				r.move(allowForwards, allowTurning);
 			}
 		}
+		moveHistogram.record(System.nanoTime() - start);
 	}
 
 	private Vec2 getRandomPuckPos() {
@@ -393,6 +644,10 @@ boolean drawHomes = true;
 		return world;
 	}
 	
+	public BodyGrid getBodyGrid() {
+		return bodyGrid;
+	}
+
 	public DebugDraw getDebugDraw() {
 		return debugDraw;
 	}
@@ -401,9 +656,133 @@ boolean drawHomes = true;
 		return stepCount;
 	}
 
+	/**
+	 * Return true if the task has converged and the run can end (see
+	 * ConvergenceMonitor).
+	 */
+	public boolean isConverged() {
+		return convergenceMonitor.isConverged();
+	}
+
+	public PuckPalette getPalette() {
+		return palette;
+	}
+
+	public ConvergenceMonitor getConvergenceMonitor() {
+		return convergenceMonitor;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Return the total time (in nanoseconds) spent by all robots sensing.
+	 * With several threads this can exceed the time elapsed.
+	 */
+	public long getSenseTime() {
+		return senseHistogram.getSum();
+	}
+
+	/**
+	 * Return the total time (in nanoseconds) spent by all robots thinking.
+	 */
+	public long getThinkTime() {
+		return thinkHistogram.getSum();
+	}
+
+	/**
+	 * Return the time (in nanoseconds) spent applying the robots' commands.
+	 */
+	public long getMoveTime() {
+		return moveHistogram.getSum();
+	}
+
+	/**
+	 * Return the time (in nanoseconds) spent preparing and submitting output.
+	 * The output itself is written in the background by OutputWriter.
+	 */
+	public long getOutputTime() {
+		return outputHistogram.getSum();
+	}
+
+	/**
+	 * Return the directory (ending in a separator) in which the output of
+	 * this arena's repetition of its experiment is stored.  This is taken
+	 * from 'experiment' rather than ExperimentManager.getCurrent(), which may
+	 * already have moved on to the next experiment by the time the arena is
+	 * disposed.
+	 */
+	private String getOutputDirName() {
+		Experiment e = experiment;
+		return ExperimentManager.getOutputDir() + SLASH + e.getStringCodeWithoutSeed() + SLASH +
+				e.getIndex() + SLASH;
+	}
+
+	/**
+	 * Create the trajectory file in the given directory.  The entities are
+	 * all robots followed by all pucks, in list order.
+	 */
+	private void createTrajectoryWriter(String dirName) {
+		int n = robots.size() + pucks.size();
+		int[] types = new int[n];
+		int e = 0;
+		for (int i = 0; i < robots.size(); i++)
+			types[e++] = TrajectoryWriter.ROBOT;
+		for (Puck p : pucks)
+			types[e++] = SensedType.getPuckIndex(p.getPuckType());
+		trajectoryWriter = new TrajectoryWriter(dirName + TrajectoryWriter.FILENAME, types);
+	}
+
+	private void storeTrajectory() {
+		if (robots.size() + pucks.size() != trajectoryWriter.getEntityCount()) {
+			System.err.println("Arena: Number of robots and pucks has changed since trajectory file was created!");
+			System.exit(-1);
+		}
+		// The record is written by OutputWriter, so fresh arrays are used.
+		int n = trajectoryWriter.getEntityCount();
+		final float[] x = new float[n], y = new float[n], theta = new float[n];
+		int e = 0;
+		for (Robot r : robots) {
+			x[e] = r.body.m_xf.position.x;
+			y[e] = r.body.m_xf.position.y;
+			theta[e++] = r.body.getAngle();
+		}
+		for (Puck p : pucks) {
+			x[e] = p.body.m_xf.position.x;
+			y[e] = p.body.m_xf.position.y;
+			theta[e++] = p.body.getAngle();
+		}
+		final TrajectoryWriter writer = trajectoryWriter;
+		final int step = stepCount;
+		OutputWriter.submit(new OutputWriter.Job() {
+			public void write() {
+				// Records are buffered by the writer and only reach the file
+				// when its buffer fills or it is closed by 'dispose'.
+				writer.append(step, x, y, theta);
+			}
+		});
+	}
+
 	public void dispose() {
-		for (Robot r : robots)
+		if (ExperimentManager.isActive() && metricsInterval > 0)
+			metrics.writeSnapshot(getOutputDirName() + METRICS_FILENAME, stepCount);
+		if (ExperimentManager.isActive())
+			convergenceMonitor.write(getOutputDirName() + ConvergenceMonitor.FILENAME);
+		for (Robot r : robots) {
 			r.dispose();
+			if (RECYCLE && !r.simSuite.hasDisplay())
+				releaseSuite(r.simSuite);
+		}
+		if (trajectoryWriter != null) {
+			final TrajectoryWriter writer = trajectoryWriter;
+			OutputWriter.submit(new OutputWriter.Job() {
+				public void write() {
+					writer.close();
+				}
+			});
+			trajectoryWriter = null;
+		}
 	}
 
 	public Enclosure getEnclosure() {
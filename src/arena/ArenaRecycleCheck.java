@@ -0,0 +1,137 @@
+package arena;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+
+import experiment.Experiment;
+import experiment.ExperimentManager;
+
+/**
+ * Checks that recycling the robots' sensors (Arena.RECYCLE) neither changes
+ * the simulation nor leaks memory.  First, a few arenas are each run both
+ * with newly created sensors and with recycled ones, starting from the same
+ * random state, and the final positions of all bodies are compared.  Then
+ * arenas are created, run for a few steps and disposed 'nRecycles' times.
+ * At intervals, garbage is collected and the check fails if any disposed
+ * arena or its world is still reachable or if the pool of suites awaiting
+ * reuse has grown.  The heap in use and the time taken to create each arena
+ * are also reported (the heap varies a little from one interval to the next
+ * whether or not suites are recycled).  Usage:
+ *
+ *     ArenaRecycleCheck [nRecycles] [nSteps]
+ */
+public class ArenaRecycleCheck {
+
+	// Number of arenas run both with and without recycling.
+	public static int N_COMPARED = 3;
+
+	// Number of times the heap is measured.
+	public static int N_INTERVALS = 10;
+
+	private static long creationTime;
+
+	// The arenas and worlds disposed of so far and not yet collected.
+	private static ArrayList<WeakReference<Object>> disposed = new ArrayList<WeakReference<Object>>();
+
+	public static void main(String[] args) {
+		int nRecycles = args.length > 0 ? Integer.valueOf(args[0]) : 300;
+		int nSteps = args.length > 1 ? Integer.valueOf(args[1]) : 30;
+
+		Experiment e = ExperimentManager.getCurrent();
+
+		// Fill the pool so that every compared arena receives sensors which
+		// have been used before.
+		Arena.RECYCLE = true;
+		run(nSteps);
+
+		int nMismatches = 0;
+		for (int n = 0; n < N_COMPARED; n++) {
+			e.resetRandom();
+			Arena.RECYCLE = false;
+			long created = run(nSteps);
+			e.resetRandom();
+			Arena.RECYCLE = true;
+			long recycled = run(nSteps);
+			if (created != recycled) {
+				nMismatches++;
+				System.err.println("arena " + n + ": hash " + created + " created, " + recycled + " recycled");
+			}
+		}
+		System.out.println("arenas compared: " + N_COMPARED + ", mismatches: " + nMismatches);
+
+		int interval = Math.max(1, nRecycles / N_INTERVALS);
+		int poolSize = Arena.getSuitePoolSize();
+		boolean leaked = false;
+		creationTime = 0;
+		for (int n = 1; n <= nRecycles; n++) {
+			run(nSteps);
+			if (n % interval == 0) {
+				long used = getUsedHeap();
+				int reachable = countReachable();
+				System.out.println("recycles: " + n + ", heap used (KB): " + used / 1024
+						+ ", reachable disposed arenas/worlds: " + reachable
+						+ ", pooled suites: " + Arena.getSuitePoolSize()
+						+ ", creation (ms/arena): " + creationTime / 1e6 / interval);
+				if (reachable > 0 || Arena.getSuitePoolSize() != poolSize)
+					leaked = true;
+				creationTime = 0;
+			}
+		}
+
+		if (nMismatches > 0 || leaked)
+			System.exit(-1);
+	}
+
+	/**
+	 * Create an arena, run it for the given number of steps and dispose of
+	 * it.  Returns a hash of the final positions of all bodies.
+	 */
+	private static long run(int nSteps) {
+		long start = System.nanoTime();
+		World world = new World(new Vec2(0, 0), false);
+		Arena arena = new Arena(world, null, false);
+		creationTime += System.nanoTime() - start;
+
+		for (int u = 0; u < nSteps * PuckSwarmTest.STEP_INTERVAL; u++) {
+			if (u % PuckSwarmTest.STEP_INTERVAL == 0)
+				arena.step(true, true, true, false, 0, false);
+			else
+				arena.coast(true, true, true);
+			world.step(1/14f, 3, 100);
+		}
+
+		long hash = 17;
+		for (Body b = world.getBodyList(); b != null; b = b.getNext()) {
+			hash = hash*31 + Float.floatToIntBits(b.getPosition().x);
+			hash = hash*31 + Float.floatToIntBits(b.getPosition().y);
+		}
+		arena.dispose();
+		disposed.add(new WeakReference<Object>(arena));
+		disposed.add(new WeakReference<Object>(world));
+		return hash;
+	}
+
+	/**
+	 * Return the number of disposed arenas and worlds which have not been
+	 * garbage collected.
+	 */
+	private static int countReachable() {
+		Iterator<WeakReference<Object>> it = disposed.iterator();
+		while (it.hasNext())
+			if (it.next().get() == null)
+				it.remove();
+		return disposed.size();
+	}
+
+	private static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
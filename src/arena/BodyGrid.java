@@ -0,0 +1,212 @@
+package arena;
+
+import org.jbox2d.collision.AABB;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.Fixture;
+import org.jbox2d.dynamics.World;
+
+/**
+ * A uniform grid over the fixture AABBs of all bodies in the world.  It is
+ * rebuilt once per call to Arena.step so that point queries (i.e. from
+ * PointSensor) need only consider the bodies registered in a single cell,
+ * rather than walking the world's entire body list.
+ *
+ * Within each cell the bodies are kept in the same order as the world's body
+ * list.  A query which stops at the first body hit therefore yields exactly
+ * the same answer as a scan of the whole body list.
+ */
+public class BodyGrid {
+
+	// Side length of each (square) cell in world coordinates.
+	public static float CELL_SIZE = 8f;
+
+	// All bodies, in the order of the world's body list.
+	private Body[] bodies = new Body[64];
+	private int nBodies;
+
+	// Extent of the grid.
+	private float minX, minY;
+	private int nCols, nRows;
+
+	// The bodies registered in cell c are given by the indices (into 'bodies')
+	// stored in cellBodies[cellStart[c]] ... cellBodies[cellStart[c+1] - 1].
+	private int[] cellStart = new int[1];
+	private int[] cellBodies = new int[64];
+
+	// Scratch arrays used while building.
+	private int[] cellCursor = new int[0];
+	private int[] lastBody = new int[0];
+
+	/**
+	 * Re-register all bodies of the given world.  Must be called whenever
+	 * bodies have moved and before any subsequent queries.
+	 */
+	public void rebuild(World world) {
+		// Gather the bodies and the overall extent of their fixtures.
+		nBodies = 0;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		minX = Float.POSITIVE_INFINITY;
+		minY = Float.POSITIVE_INFINITY;
+		for (Body b = world.getBodyList(); b != null; b = b.getNext()) {
+			if (nBodies == bodies.length) {
+				Body[] bigger = new Body[2 * bodies.length];
+				System.arraycopy(bodies, 0, bigger, 0, nBodies);
+				bodies = bigger;
+			}
+			bodies[nBodies++] = b;
+
+			for (Fixture f = b.getFixtureList(); f != null; f = f.getNext()) {
+				AABB aabb = f.getAABB();
+				minX = Math.min(minX, aabb.lowerBound.x);
+				minY = Math.min(minY, aabb.lowerBound.y);
+				maxX = Math.max(maxX, aabb.upperBound.x);
+				maxY = Math.max(maxY, aabb.upperBound.y);
+			}
+		}
+		// Release any bodies left over from a previous (larger) world.
+		for (int k = nBodies; k < bodies.length && bodies[k] != null; k++)
+			bodies[k] = null;
+
+		if (minX > maxX) {
+			// No fixtures at all.
+			nCols = nRows = 0;
+			return;
+		}
+		nCols = (int) ((maxX - minX) / CELL_SIZE) + 1;
+		nRows = (int) ((maxY - minY) / CELL_SIZE) + 1;
+		int nCells = nCols * nRows;
+		if (cellStart.length < nCells + 1) {
+			cellStart = new int[nCells + 1];
+			cellCursor = new int[nCells];
+			lastBody = new int[nCells];
+		}
+
+		// First pass: count the bodies registered in each cell.  A body with
+		// several fixtures covering the same cell is only registered once.
+		for (int c = 0; c <= nCells; c++)
+			cellStart[c] = 0;
+		for (int c = 0; c < nCells; c++)
+			lastBody[c] = -1;
+		for (int k = 0; k < nBodies; k++)
+			for (Fixture f = bodies[k].getFixtureList(); f != null; f = f.getNext()) {
+				AABB aabb = f.getAABB();
+				int i0 = getCol(aabb.lowerBound.x), i1 = getCol(aabb.upperBound.x);
+				int j0 = getRow(aabb.lowerBound.y), j1 = getRow(aabb.upperBound.y);
+				for (int j = j0; j <= j1; j++)
+					for (int i = i0; i <= i1; i++) {
+						int c = j * nCols + i;
+						if (lastBody[c] != k) {
+							lastBody[c] = k;
+							cellStart[c + 1]++;
+						}
+					}
+			}
+
+		// Convert counts to starting offsets.
+		for (int c = 0; c < nCells; c++)
+			cellStart[c + 1] += cellStart[c];
+		if (cellBodies.length < cellStart[nCells])
+			cellBodies = new int[2 * cellStart[nCells]];
+
+		// Second pass: fill.  Bodies are visited in body-list order, so each
+		// cell's entries end up in that order too.
+		for (int c = 0; c < nCells; c++) {
+			cellCursor[c] = cellStart[c];
+			lastBody[c] = -1;
+		}
+		for (int k = 0; k < nBodies; k++)
+			for (Fixture f = bodies[k].getFixtureList(); f != null; f = f.getNext()) {
+				AABB aabb = f.getAABB();
+				int i0 = getCol(aabb.lowerBound.x), i1 = getCol(aabb.upperBound.x);
+				int j0 = getRow(aabb.lowerBound.y), j1 = getRow(aabb.upperBound.y);
+				for (int j = j0; j <= j1; j++)
+					for (int i = i0; i <= i1; i++) {
+						int c = j * nCols + i;
+						if (lastBody[c] != k) {
+							lastBody[c] = k;
+							cellBodies[cellCursor[c]++] = k;
+						}
+					}
+			}
+	}
+
+	private int getCol(float x) {
+		return Math.min(nCols - 1, (int) ((x - minX) / CELL_SIZE));
+	}
+
+	private int getRow(float y) {
+		return Math.min(nRows - 1, (int) ((y - minY) / CELL_SIZE));
+	}
+
+	/**
+	 * Return the index of the cell containing (x, y), or -1 if this point lies
+	 * outside the AABB of every fixture in the world.
+	 */
+	public int getCell(float x, float y) {
+		if (x < minX || y < minY)
+			return -1;
+		int i = (int) ((x - minX) / CELL_SIZE);
+		int j = (int) ((y - minY) / CELL_SIZE);
+		if (i >= nCols || j >= nRows)
+			return -1;
+		return j * nCols + i;
+	}
+
+	/**
+	 * Place all bodies which have a fixture AABB overlapping the rectangle
+	 * [x0, x1] x [y0, y1] into 'out', in body-list order, and return their
+	 * number.  'marks' is scratch space which must be all false on entry (it
+	 * will be left that way).  Both arrays must have room for getBodyCount()
+	 * entries.
+	 */
+	public int getBodiesOverlapping(float x0, float y0, float x1, float y1,
+									boolean[] marks, Body[] out) {
+		if (nCols == 0 || x1 < minX || y1 < minY)
+			return 0;
+		int i0 = Math.max(0, (int) ((x0 - minX) / CELL_SIZE));
+		int j0 = Math.max(0, (int) ((y0 - minY) / CELL_SIZE));
+		int i1 = getCol(x1), j1 = getRow(y1);
+		if (i0 > i1 || j0 > j1)
+			return 0;
+
+		int lo = nBodies, hi = -1;
+		for (int j = j0; j <= j1; j++)
+			for (int i = i0; i <= i1; i++) {
+				int c = j * nCols + i;
+				for (int n = cellStart[c]; n < cellStart[c + 1]; n++) {
+					int k = cellBodies[n];
+					marks[k] = true;
+					lo = Math.min(lo, k);
+					hi = Math.max(hi, k);
+				}
+			}
+
+		int count = 0;
+		for (int k = lo; k <= hi; k++)
+			if (marks[k]) {
+				marks[k] = false;
+				out[count++] = bodies[k];
+			}
+		return count;
+	}
+
+	/** The number of bodies registered at the last rebuild. */
+	public int getBodyCount() {
+		return nBodies;
+	}
+
+	/** Index of the first entry for the given cell (see getEntry). */
+	public int getCellStart(int cell) {
+		return cellStart[cell];
+	}
+
+	/** One past the index of the last entry for the given cell. */
+	public int getCellEnd(int cell) {
+		return cellStart[cell + 1];
+	}
+
+	/** The body stored at the given entry. */
+	public Body getEntry(int n) {
+		return bodies[cellBodies[n]];
+	}
+}
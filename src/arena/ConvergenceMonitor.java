@@ -0,0 +1,141 @@
+package arena;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import localmap.Cluster;
+import localmap.LocalMap;
+
+import org.jbox2d.common.Vec2;
+
+import sensors.PuckPalette;
+import sensors.SensedType;
+import utils.OutputWriter;
+import experiment.Experiment;
+
+/**
+ * Tracks the completion of the clustering task while an arena runs, using
+ * the measure computed afterwards by analysis.Analyze: the sum over puck
+ * colours of the size of the largest cluster of that colour, as a percentage
+ * of Arena.nPucks.  Completion is sampled on the steps at which the pucks'
+ * positions are stored (every Arena.STORAGE_INTERVAL steps), so it takes
+ * exactly the values Analyze will find.  The following properties apply:
+ *
+ *     ConvergenceMonitor.targetCompletion  the completion (%) which defines
+ *                                          stepsToCompletion (50, as Analyze)
+ *     ConvergenceMonitor.stopCompletion    the completion (%) at or above
+ *                                          which the run may end (95)
+ *     ConvergenceMonitor.stopWindow        the number of steps for which
+ *                                          stopCompletion must be held before
+ *                                          the run ends (0: never end early)
+ *
+ * The first sampled step at which the target was reached (or -1), the step
+ * at which the run ended and the final completion are written to FILENAME
+ * in the repetition's directory.
+ */
+public class ConvergenceMonitor {
+
+	public static final String FILENAME = "convergence.txt";
+
+	float targetCompletion, stopCompletion;
+	int stopWindow;
+
+	// The number of pucks by which completion is normalized, as in Analyze.
+	int nPucks;
+
+	// The positions of the pucks of each colour, refilled at each sample.
+	private ArrayList<ArrayList<Vec2>> positions = new ArrayList<ArrayList<Vec2>>();
+	private ArrayList<Cluster> clusters = new ArrayList<Cluster>();
+
+	double completion;
+	int stepsToCompletion = -1;
+
+	// The first step of the current run of samples at or above
+	// stopCompletion, or -1 if the last sample was below it.
+	int heldSince = -1;
+
+	int lastStep = -1;
+	boolean converged;
+
+	public ConvergenceMonitor(Experiment e, PuckPalette palette) {
+		targetCompletion = e.getProperty("ConvergenceMonitor.targetCompletion", 50f, null);
+		stopCompletion = e.getProperty("ConvergenceMonitor.stopCompletion", 95f, null);
+		stopWindow = e.getProperty("ConvergenceMonitor.stopWindow", 0, null);
+		nPucks = e.getProperty("Arena.nPucks", 10, null);
+		if (stopWindow > 0 && stopCompletion < targetCompletion) {
+			System.err.println("ConvergenceMonitor: stopCompletion must not be less than targetCompletion!");
+			System.exit(-1);
+		}
+		for (int k = 0; k < palette.size(); k++)
+			positions.add(new ArrayList<Vec2>());
+	}
+
+	/**
+	 * Sample the completion of the given pucks at the given step.
+	 */
+	public void update(ArrayList<Puck> pucks, int stepCount) {
+		for (ArrayList<Vec2> list : positions)
+			list.clear();
+		for (Puck p : pucks)
+			positions.get(SensedType.getPuckIndex(p.getPuckType())).add(p.body.m_xf.position);
+
+		// As in Analyze, the largest cluster of each colour is summed in
+		// double precision.
+		double sumMaxClusterSize = 0;
+		for (int k = 0; k < positions.size(); k++) {
+			clusters.clear();
+			LocalMap.extractClusters(positions.get(k), 0, clusters);
+			int max = 0;
+			for (Cluster cluster : clusters)
+				max = Math.max(max, cluster.size);
+			sumMaxClusterSize += max;
+		}
+		completion = 100.0 * sumMaxClusterSize / nPucks;
+
+		if (stepsToCompletion == -1 && completion >= targetCompletion)
+			stepsToCompletion = stepCount;
+		if (completion >= stopCompletion) {
+			if (heldSince == -1)
+				heldSince = stepCount;
+		} else
+			heldSince = -1;
+		converged = stopWindow > 0 && heldSince != -1 && stepCount - heldSince >= stopWindow;
+		lastStep = stepCount;
+	}
+
+	/**
+	 * Return true if the completion has been held at or above stopCompletion
+	 * for stopWindow steps, so the run can end.
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	public double getCompletion() {
+		return completion;
+	}
+
+	public int getStepsToCompletion() {
+		return stepsToCompletion;
+	}
+
+	/**
+	 * Write the results to the given file (in the background).
+	 */
+	public void write(final String filename) {
+		final String text = "stepsToCompletion=" + stepsToCompletion + "\n"
+				+ "targetCompletion=" + targetCompletion + "\n"
+				+ "lastStep=" + lastStep + "\n"
+				+ "completion=" + completion + "\n"
+				+ "converged=" + converged + "\n";
+		OutputWriter.submit(new OutputWriter.Job() {
+			public void write() throws IOException {
+				BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
+				writer.write(text);
+				writer.close();
+			}
+		});
+	}
+}
@@ -44,7 +44,7 @@ public class DistributionTaskManager {
 		removedCounts = new int[nTypes];		
 	}
 
-	public static DistributionTaskManager getInstance() {
+	public static synchronized DistributionTaskManager getInstance() {
 		if (instance == null)
 			instance = new DistributionTaskManager();
 		return instance;
@@ -0,0 +1,64 @@
+package arena;
+
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.World;
+
+import sensors.Calibration;
+import sensors.Calibration.CalibDataPerPixel;
+import sensors.PointSensor;
+import sensors.STCameraImage;
+import sensors.SensedType;
+
+/**
+ * Checks that the image produced by GridCamera is identical to that obtained
+ * by applying a PointSensor at each calibrated pixel.  The simulation is run
+ * with thinking enabled so that the robots move and gather pucks.  Every
+ * pixel of every robot's image is compared after each step and the number of
+ * mismatches is reported.  Usage:
+ *
+ *     GridCameraCheck [nPucks] [nSteps]
+ */
+public class GridCameraCheck {
+
+	public static void main(String[] args) {
+		int nPucks = args.length > 0 ? Integer.valueOf(args[0]) : 100;
+		int nSteps = args.length > 1 ? Integer.valueOf(args[1]) : 300;
+
+		World world = new World(new Vec2(0, 0), false);
+		Arena arena = new Arena(world, null, false);
+		for (int i = arena.pucks.size(); i < nPucks; i++)
+			arena.createPuck(SensedType.getPuckType(i % 2), -Float.MAX_VALUE, Float.MAX_VALUE);
+
+		long nPixels = 0, nMismatches = 0;
+		for (int s = 0; s < nSteps; s++) {
+			arena.step(true, true, true, false, 0, false);
+
+			for (Robot r : arena.robots) {
+				STCameraImage image = r.simSuite.getCameraImage();
+				Calibration calib = image.getCalibration();
+				for (int y = 0; y < calib.getImageHeight(); y++)
+					for (int x = 0; x < calib.getImageWidth(); x++) {
+						CalibDataPerPixel pixelCalib = calib.getCalibData(x, y);
+						if (pixelCalib == null || pixelCalib.gripperBody)
+							continue;
+						PointSensor sensor = new PointSensor(
+								new Vec2(pixelCalib.Xr, pixelCalib.Yr), r.body, arena);
+						sensor.sense();
+						nPixels++;
+						if (sensor.getSensedType() != image.get(x, y)) {
+							nMismatches++;
+							System.err.println("step " + s + ", " + r.name + ", pixel ("
+									+ x + ", " + y + "): camera " + image.get(x, y)
+									+ ", point sensor " + sensor.getSensedType());
+						}
+					}
+			}
+
+			world.step(1/14f, 3, 100);
+		}
+
+		System.out.println("pixels compared: " + nPixels + ", mismatches: " + nMismatches);
+		if (nMismatches > 0)
+			System.exit(-1);
+	}
+}
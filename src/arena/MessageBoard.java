@@ -15,7 +15,7 @@ public class MessageBoard {
 	private MessageBoard() {
 	}
 	
-	public static MessageBoard getMessageBoard() {
+	public static synchronized MessageBoard getMessageBoard() {
 		if (instance == null)
 			instance = new MessageBoard();
 		return instance;
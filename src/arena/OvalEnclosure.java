@@ -28,7 +28,7 @@ public class OvalEnclosure implements Enclosure {
 	private Vec2 leftCircle;
 	private Vec2 rightCircle;
 	
-	Random rng = ExperimentManager.getCurrent().getRandom();
+	Random rng = ExperimentManager.getCurrent().getRandom("OvalEnclosure");
 	
 	private Body body;
 
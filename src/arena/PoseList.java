@@ -10,6 +10,7 @@ import java.util.Scanner;
 import org.jbox2d.common.Vec3;
 
 import sensors.Pose;
+import utils.OutputWriter;
 
 /**
  * Like PositionLIst, only for (x, y, theta) poses.  BAD: Should unify with PositionList.
@@ -44,6 +45,17 @@ public class PoseList {
 		}
 	}
 	
+	/**
+	 * As save, except that the file is written in the background by
+	 * OutputWriter.
+	 */
+	public void saveLater(String filename) {
+		StringBuilder text = new StringBuilder();
+		for (Pose p : list)
+			text.append(p.getX()).append(", ").append(p.getY()).append(", ").append(p.getTheta()).append('\n');
+		OutputWriter.writeText(filename, text.toString());
+	}
+	
 	/**
 	 * Load the given file into a new PoseList and return it.
 	 */
@@ -75,6 +87,18 @@ public class PoseList {
 		}
 	}
 	
+	/**
+	 * Return a new PoseList holding the robot poses from the given record
+	 * of a trajectory file, in the order the robots were stored.
+	 */
+	public static PoseList read(TrajectoryReader reader, int record) {
+		PoseList pList = new PoseList();
+		for (int e=0; e<reader.getEntityCount(); e++)
+			if (reader.getType(e) == TrajectoryWriter.ROBOT)
+				pList.add(reader.getX(record, e), reader.getY(record, e), reader.getTheta(record, e));
+		return pList;
+	}
+	
 	public int size() {
 		return list.size();
 	}
@@ -1,17 +1,21 @@
 package arena;
 
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 import localmap.Cluster;
 import localmap.LocalMap;
 
 import org.jbox2d.common.Vec2;
 
+import utils.FloatParser;
+import utils.OutputWriter;
 import utils.RunningStats;
 
 /**
@@ -49,33 +53,91 @@ public class PositionList {
 	}
 	
 	/**
-	 * Load the given file into a new PositionList and return it.
+	 * As save, except that the file is written in the background by
+	 * OutputWriter.
+	 */
+	public void saveLater(String filename) {
+		StringBuilder text = new StringBuilder();
+		for (Vec2 p : list)
+			text.append(p.x).append(", ").append(p.y).append('\n');
+		OutputWriter.writeText(filename, text.toString());
+	}
+	
+	/**
+	 * Load the given file into a new PositionList and return it.  Each line
+	 * holds one "x, y" pair as written by 'save'.  Returns null if the file
+	 * does not exist.
 	 */
 	public static PositionList load(String filename) {
+		byte[] text;
 		try {
-			PositionList pList = new PositionList();
-			
-			Scanner scanner = new Scanner(new File(filename));
-			scanner.useDelimiter(System.getProperty("line.separator"));
-			while (scanner.hasNext()) {
-				String s = scanner.next();
-				Scanner lineScanner = new Scanner(s);
-				lineScanner.useDelimiter("\\s*,\\s*");
-
-				float x = lineScanner.nextFloat();
-				float y = lineScanner.nextFloat();
-				pList.add(x, y);
-				
-				lineScanner.close();
-			}
-			scanner.close();
-
-			return pList;
-			
+			File file = new File(filename);
+			text = new byte[(int) file.length()];
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			in.readFully(text);
+			in.close();
 		} catch (FileNotFoundException e) {
 			//e.printStackTrace();
 			return null;
+		} catch (IOException e) {
+			System.err.println("PositionList: Problem loading " + filename);
+			System.exit(-1);
+			return null;
 		}
+
+		PositionList pList = new PositionList();
+		int n = text.length;
+		int lineStart = 0;
+		while (lineStart < n) {
+			int lineEnd = lineStart;
+			while (lineEnd < n && text[lineEnd] != '\n')
+				lineEnd++;
+
+			// Find the comma and trim the whitespace around both values.
+			// Blank lines are skipped.
+			int xStart = skipSpace(text, lineStart, lineEnd);
+			if (xStart < lineEnd) {
+				int comma = xStart;
+				while (comma < lineEnd && text[comma] != ',')
+					comma++;
+				if (comma == lineEnd) {
+					System.err.println("PositionList: Bad line in " + filename);
+					System.exit(-1);
+				}
+				int xEnd = trimSpace(text, xStart, comma);
+				int yStart = skipSpace(text, comma + 1, lineEnd);
+				int yEnd = trimSpace(text, yStart, lineEnd);
+				pList.add(FloatParser.parse(text, xStart, xEnd),
+						  FloatParser.parse(text, yStart, yEnd));
+			}
+			lineStart = lineEnd + 1;
+		}
+		return pList;
+	}
+
+	private static int skipSpace(byte[] text, int start, int end) {
+		while (start < end && Character.isWhitespace(text[start]))
+			start++;
+		return start;
+	}
+
+	private static int trimSpace(byte[] text, int start, int end) {
+		while (end > start && Character.isWhitespace(text[end - 1]))
+			end--;
+		return end;
+	}
+	
+	/**
+	 * Return a new PositionList holding the positions of the pucks of the
+	 * given colour index from the given record of a trajectory file, in the
+	 * order the pucks were stored.
+	 */
+	public static PositionList read(TrajectoryReader reader, int record, int colourIndex) {
+		PositionList pList = new PositionList();
+		for (int e=0; e<reader.getEntityCount(); e++)
+			if (reader.getType(e) == colourIndex)
+				pList.add(reader.getX(record, e), reader.getY(record, e));
+		return pList;
 	}
 	
 	/**
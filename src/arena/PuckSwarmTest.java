@@ -13,7 +13,6 @@ import org.jbox2d.dynamics.World;
 import org.jbox2d.testbed.framework.TestbedSettings;
 import org.jbox2d.testbed.framework.TestbedTest;
 
-import sensors.SimSuite;
 import experiment.ExperimentManager;
 
 public class PuckSwarmTest extends TestbedTest {
@@ -125,8 +124,6 @@ public class PuckSwarmTest extends TestbedTest {
 
 		// Create anew.
 		updateCount = 0;
-		Robot.nameIndex = 0;
-		SimSuite.jframeY = 25;
 		arena = new Arena(w, getDebugDraw(), false);
 	}
 
@@ -19,6 +19,9 @@ import utils.AngleUtils;
 import utils.FixtureUtils;
 import controllers.Controller;
 import controllers.ControllerUtils;
+import experiment.Experiment;
+import experiment.ExperimentManager;
+import experiment.RandomStreams;
 
 public class Robot implements Entity {
 	Body body;
@@ -37,6 +40,14 @@ public class Robot implements Entity {
 	
 	// The controller, or "brain".
 	Controller controller;		
+
+	// This robot's node of keyed random streams, or null if it uses the
+	// experiment's shared stream (see Arena.perRobotRandom).
+	RandomStreams streams;
+
+	// Time spent (in nanoseconds) sensing and thinking in the last step,
+	// recorded by Arena.
+	long senseTime, thinkTime;
 	
 	public static final float SRV_LENGTH = 22f;
 	public static final float SRV_WIDTH = 11.3f;
@@ -51,9 +62,6 @@ public class Robot implements Entity {
 	// The minimum distance from the boundary to place a Robot.
 	public static float MIN_BOUNDARY_DISTANCE = (SRV_LENGTH)/2;
 	
-	// Index used to create unique names for all robots.
-	public static int nameIndex = 0;
-	
 	private static Color3f[] color3fs = {
 		Color3f.GREEN, Color3f.BLUE, new Color3f(1, 0, 1),
 		new Color3f(0, 1, 1), new Color3f(1, 1, 0), Color3f.RED
@@ -66,6 +74,20 @@ public class Robot implements Entity {
 						 boolean presetCaches) {
 		this.debugDraw = arena.getDebugDraw();
 		this.world = arena.getWorld();
+
+		// Create robot's name and color3f based on its index in the arena.
+		int nameIndex = arena.robots.size();
+		name = "R" + nameIndex;
+		color3f = color3fs[nameIndex % color3fs.length];
+		color = colors[nameIndex % colors.length];
+
+		// Anything created below which draws on the experiment's random
+		// stream will receive a stream of this robot's instead (if it has
+		// them).
+		Experiment e = ExperimentManager.getCurrent();
+		streams = arena.createRobotStreams(name);
+		RandomStreams lastStreams = e.getThreadStreams();
+		e.setThreadStreams(streams);
 		
 		BodyDef bodyDef = new BodyDef();
 		bodyDef.type = BodyType.DYNAMIC;
@@ -81,15 +103,10 @@ public class Robot implements Entity {
 		
 		body.setUserData(this);
 		
-		// Create robot's name and color3f based on nameIndex.
-		name = "R" + nameIndex;
-		color3f = color3fs[nameIndex % color3fs.length];
-		color = colors[nameIndex % colors.length];
-		nameIndex++;
-		
-		simSuite = new SimSuite(name, body, arena, enableDisplay);
+		simSuite = arena.createSimSuite(name, body, enableDisplay);
 
 		controller = ControllerUtils.create(presetCaches);
+		e.setThreadStreams(lastStreams);
 	}
 	
 	private void createFixtures() {
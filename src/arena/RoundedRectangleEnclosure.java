@@ -26,7 +26,7 @@ public class RoundedRectangleEnclosure implements Enclosure {
 	// The four corners.
 	protected Vec2 upperLeft, upperRight, lowerLeft, lowerRight;
 	
-	protected Random rng = ExperimentManager.getCurrent().getRandom();
+	protected Random rng = ExperimentManager.getCurrent().getRandom("RoundedRectangleEnclosure");
 	
 	protected Body body;
 
@@ -1,67 +1,156 @@
 	package arena;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
-import org.jbox2d.common.Vec2;
-import org.jbox2d.dynamics.Body;
-import org.jbox2d.dynamics.World;
-
-import sensors.SimSuite;
+import utils.OutputWriter;
+import experiment.Experiment;
 import experiment.ExperimentManager;
+import experiment.Sweep;
 
+/**
+ * Runs all experiments defined by ExperimentManager without a GUI.  The
+ * experiments are independent, each with its own World and Arena, so they are
+ * distributed over a pool of worker threads.  The code of each completed
+ * experiment is appended to PROGRESS_FILENAME in the output directory and
+ * those already listed there are skipped, so an interrupted run can simply be
+ * restarted.  With '-r', the robots' sensors are recycled from one experiment
+ * to the next (see Arena.RECYCLE).
+ *
+ * If the given directory contains a sweep file (see Sweep), the experiments
+ * of the sweep are run, longest first, and each is only created when a worker
+ * becomes free to run it.  Otherwise the directory should contain a
+ * .properties file for each experiment.  Usage:
+ *
+ *     RunOffline [-w nWorkers] [-r] [outputDir]
+ */
 public class RunOffline {
 	
 //	private static String outputDir;
 	private static Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
-	private static World world;
-	private static Arena arena;
-	private static long startTime = -1;
-	private static int updateCount;
-	
-	public static void main(String[] args) throws SecurityException, IOException {
+
+	// Lists the codes of all completed experiments.
+	static final String PROGRESS_FILENAME = "progress.txt";
+
+	public static void main(String[] args) throws SecurityException, IOException, InterruptedException {
 		
-		if (args.length > 2) {
+		int nWorkers = 1;
+		int a = 0;
+		if (args.length >= 2 && args[0].equals("-w")) {
+			nWorkers = Integer.valueOf(args[1]);
+			a = 2;
+		}
+		if (args.length > a && args[a].equals("-r")) {
+			Arena.RECYCLE = true;
+			a++;
+		}
+
+		if (args.length - a > 2) {
 			System.err.println("If no arguments are specified then we launch " + 
 					"using the hardcoded experiments defined in " + 
 					"ExperimentManager.  If 1 argument is specified then this " +
 					"should be a directory containing existing .properties files " +
-					"which define the experiments to run required.");
+					"which define the experiments to run required, or a " +
+					Sweep.FILENAME + " file declaring a sweep.  Either " +
+					"may be preceded by '-w nWorkers' to run that many " +
+					"experiments at once and then by '-r' to recycle the " +
+					"robots' sensors between experiments.");
 			System.exit(-1);
 		}
 		
 		boolean createExperiments = true;
 		String outputDir = "";
-		if (args.length == 1) {
+		if (args.length - a == 1) {
 			createExperiments = false;
-			outputDir = args[0];
+			outputDir = args[a];
 		}
 
 		// Activate the ExperimentManager.
-		ExperimentManager.activate(createExperiments, outputDir);
+		Sweep sweep = null;
+		if (!createExperiments && new File(outputDir, Sweep.FILENAME).exists())
+			sweep = ExperimentManager.activateSweep(outputDir);
+		else
+			ExperimentManager.activate(createExperiments, outputDir);
 		
 		FileHandler handler = new FileHandler(getLogFileName());
 		handler.setFormatter(new SimpleFormatter());
 		logger.addHandler(handler);
 		logger.setLevel(Level.ALL);
-		
-		String experimentCode = ExperimentManager.getCurrent().getStringCode();
-		logger.info(experimentCode);
-		recreateArena();
-		
-		while (ExperimentManager.isActive())
-			step();
+
+		HashSet<String> completed = readProgress();
+		ExecutorService workers = Executors.newFixedThreadPool(nWorkers);
+		if (sweep != null)
+			submitSweep(sweep, completed, workers);
+		else
+			for (final Experiment e : ExperimentManager.getRemaining()) {
+				if (completed.contains(e.getStringCode())) {
+					logger.info(e.getStringCode() + " already completed");
+					continue;
+				}
+				workers.execute(new Runnable() {
+					public void run() {
+						runExperiment(e);
+					}
+				});
+			}
+		workers.shutdown();
+		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		logger.info("output writer stalls: " + OutputWriter.getStallCount());
 	}
 	
+	/**
+	 * Submit all experiments of the sweep which have not been completed, in
+	 * decreasing order of their estimated cost.  The workers take them from a
+	 * single queue as they become free, so the longest are under way from the
+	 * start and the shortest fill in at the end.
+	 */
+	private static void submitSweep(final Sweep sweep, HashSet<String> completed, ExecutorService workers) {
+		int nConfigurations = sweep.getConfigurationCount();
+		final long[] costs = new long[nConfigurations];
+		ArrayList<int[]> jobs = new ArrayList<int[]>();
+		for (int c = 0; c < nConfigurations; c++) {
+			costs[c] = sweep.getCost(c);
+			String code = sweep.getCode(c);
+			for (int r = 0; r < sweep.getRepetitions(); r++)
+				if (!completed.contains(code + "__" + r))
+					jobs.add(new int[] { c, r });
+		}
+		logger.info("sweep: " + nConfigurations + " configurations, " + jobs.size() + " of "
+				+ nConfigurations * sweep.getRepetitions() + " experiments remaining");
+
+		// The sort is stable, so experiments of equal cost keep their order.
+		Collections.sort(jobs, new Comparator<int[]>() {
+			public int compare(int[] a, int[] b) {
+				return Long.compare(costs[b[0]], costs[a[0]]);
+			}
+		});
+		for (final int[] job : jobs)
+			workers.execute(new Runnable() {
+				public void run() {
+					runExperiment(sweep.createExperiment(job[0], job[1]));
+				}
+			});
+	}
+
 	private static String getLogFileName() {
 		DateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy_HH.mm.ss");
 		Date date = new Date();
@@ -69,46 +158,58 @@ public class RunOffline {
 			dateFormat.format(date) + ".txt";
 	}
 
-	private static void step() {
-		// Check to see if the current Experiment is over.  If so, store the 
-		// result and start the next one.
-		if (arena.getStepCount() > ExperimentManager.getCurrent().
-				getProperty("Arena.maxStepCount", 10000, null))
-		{
-			//ExperimentManager.store();
-			if (ExperimentManager.hasNext())
-				ExperimentManager.next();
-			else
-				return;
-			recreateArena();
-			Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).info(ExperimentManager.getCurrent().getStringCode());
-		}
-		
-		if (updateCount % PuckSwarmTest.STEP_INTERVAL == 0)
-			arena.step(true, true, true, false, 0, false);
-		else
-			arena.coast(true, true, true);
-		updateCount++;
+	/**
+	 * Run the given experiment to completion on the calling thread.
+	 */
+	private static void runExperiment(Experiment e) {
+		ExperimentManager.setThreadExperiment(e);
+		logger.info(e.getStringCode());
+		long startTime = System.currentTimeMillis();
+
+		Simulator simulator = new Simulator();
+		int maxStepCount = e.getProperty("Arena.maxStepCount", 10000, null);
+		simulator.run(maxStepCount);
 
-		//world.step(1/60f, 8, 100);
-		world.step(1/14f, 3, 100);
+		// Progress is only recorded once all output has been written.
+		simulator.dispose();
+
+		long elapsed = (System.currentTimeMillis() - startTime) / 60000; 
+		logger.info(e.getStringCode() + " elapsed: " + elapsed + " minutes");
+		logger.info(e.getStringCode() + " profile: " + simulator.getProfile());
+		ConvergenceMonitor monitor = simulator.getArena().getConvergenceMonitor();
+		logger.info(e.getStringCode() + " stepsToCompletion: " + monitor.getStepsToCompletion()
+				+ (monitor.isConverged() ? " (converged at step " + simulator.getArena().getStepCount() + ")" : ""));
+		recordProgress(e);
+		ExperimentManager.setThreadExperiment(null);
 	}
 
-	private static void recreateArena() {
-		// Create anew.
-		updateCount = 0;
-		Robot.nameIndex = 0;
-		SimSuite.jframeY = 25;
-		if (startTime != -1) {
-			long elapsed = (System.currentTimeMillis() - startTime) / 60000; 
-			Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).info("elapsed: " + elapsed + " minutes");
+	private static HashSet<String> readProgress() {
+		HashSet<String> completed = new HashSet<String>();
+		File file = new File(ExperimentManager.getOutputDir(), PROGRESS_FILENAME);
+		if (!file.exists())
+			return completed;
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(file));
+			String line;
+			while ((line = reader.readLine()) != null)
+				if (line.length() > 0)
+					completed.add(line);
+			reader.close();
+		} catch (IOException e) {
+			System.err.println("RunOffline: Problem reading " + file);
+			System.exit(-1);
 		}
-		
-		// A whole new world!  (Reusing an existing world led to a memory leak!)
-		world = new World(new Vec2(0,0), false);
+		return completed;
+	}
 
-		arena = new Arena(world, null, false);
-		
-		startTime = System.currentTimeMillis();
+	private static synchronized void recordProgress(Experiment e) {
+		File file = new File(ExperimentManager.getOutputDir(), PROGRESS_FILENAME);
+		try {
+			FileWriter writer = new FileWriter(file, true);
+			writer.write(e.getStringCode() + "\n");
+			writer.close();
+		} catch (IOException ex) {
+			System.err.println("RunOffline: Problem writing " + file);
+		}
 	}
-}
\ No newline at end of file
+}
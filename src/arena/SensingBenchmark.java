@@ -0,0 +1,92 @@
+package arena;
+
+import java.util.ArrayList;
+
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.World;
+
+import sensors.Calibration;
+import sensors.Calibration.CalibDataPerPixel;
+import sensors.GridCamera;
+import sensors.PointSensor;
+import sensors.SensedType;
+
+/**
+ * Measures the time spent sensing as the number of bodies in the world grows.
+ * For each configuration, the images of all robots are formed in three ways:
+ * by applying a PointSensor at every pixel while walking the whole body list,
+ * by doing the same while using the BodyGrid, and by GridCamera which renders
+ * the image in one batch.  Usage:
+ *
+ *     SensingBenchmark [nRobots] [nSteps]
+ */
+public class SensingBenchmark {
+
+	static final int[] PUCK_COUNTS = { 10, 40, 160, 400 };
+
+	public static void main(String[] args) {
+		int nRobots = args.length > 0 ? Integer.valueOf(args[0]) : 4;
+		int nSteps = args.length > 1 ? Integer.valueOf(args[1]) : 20;
+
+		System.out.println("nRobots: " + nRobots + ", nSteps: " + nSteps);
+		System.out.println("nBodies\tscan (ms/step)\tgrid (ms/step)\tcamera (ms/step)");
+		for (int nPucks : PUCK_COUNTS) {
+			World world = new World(new Vec2(0, 0), false);
+			Arena arena = new Arena(world, null, false);
+			for (int i = arena.robots.size(); i < nRobots; i++)
+				arena.createRobot(false);
+			for (int i = arena.pucks.size(); i < nPucks; i++)
+				arena.createPuck(SensedType.getPuckType(i % 2), -Float.MAX_VALUE, Float.MAX_VALUE);
+			arena.step(false, false, false, false, 0, false);
+
+			// A PointSensor for each calibrated pixel of each robot, as well
+			// as a separate GridCamera for each robot.
+			ArrayList<PointSensor> sensors = new ArrayList<PointSensor>();
+			ArrayList<GridCamera> cameras = new ArrayList<GridCamera>();
+			for (Robot r : arena.robots) {
+				GridCamera camera = new GridCamera(r.body, arena);
+				cameras.add(camera);
+				Calibration calib = camera.getImage().getCalibration();
+				for (int y = 0; y < calib.getImageHeight(); y++)
+					for (int x = 0; x < calib.getImageWidth(); x++) {
+						CalibDataPerPixel pixelCalib = calib.getCalibData(x, y);
+						if (pixelCalib != null && !pixelCalib.gripperBody)
+							sensors.add(new PointSensor(new Vec2(pixelCalib.Xr, pixelCalib.Yr), r.body, arena));
+					}
+			}
+
+			PointSensor.USE_BODY_GRID = false;
+			double scanTime = timeSensors(sensors, nSteps);
+			PointSensor.USE_BODY_GRID = true;
+			double gridTime = timeSensors(sensors, nSteps);
+			double cameraTime = timeCameras(cameras, nSteps);
+
+			System.out.println(world.getBodyCount() + "\t" + scanTime + "\t" + gridTime + "\t" + cameraTime);
+		}
+	}
+
+	private static double timeSensors(ArrayList<PointSensor> sensors, int nSteps) {
+		// Warm up before timing.
+		for (int s = 0; s < nSteps; s++)
+			for (PointSensor sensor : sensors)
+				sensor.sense();
+
+		long start = System.nanoTime();
+		for (int s = 0; s < nSteps; s++)
+			for (PointSensor sensor : sensors)
+				sensor.sense();
+		return (System.nanoTime() - start) / (1e6 * nSteps);
+	}
+
+	private static double timeCameras(ArrayList<GridCamera> cameras, int nSteps) {
+		for (int s = 0; s < nSteps; s++)
+			for (GridCamera camera : cameras)
+				camera.sense();
+
+		long start = System.nanoTime();
+		for (int s = 0; s < nSteps; s++)
+			for (GridCamera camera : cameras)
+				camera.sense();
+		return (System.nanoTime() - start) / (1e6 * nSteps);
+	}
+}
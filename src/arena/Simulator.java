@@ -0,0 +1,152 @@
+package arena;
+
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.World;
+
+import utils.Histogram;
+import utils.Metrics;
+import utils.OutputWriter;
+import experiment.Experiment;
+import experiment.ExperimentManager;
+
+/**
+ * Runs an arena for the current experiment without a GUI, as fast as
+ * possible.  The schedule and the physics engine's settings are taken from the
+ * experiment's properties:
+ *
+ *     Simulator.physicsHz           physics updates per simulated second (14)
+ *     Simulator.controllerHz        controller steps per simulated second (14/3)
+ *     Simulator.velocityIterations  velocity iterations of the solver (3)
+ *     Simulator.positionIterations  position iterations of the solver (100)
+ *
+ * The robots sense and think on every 'stepInterval'th physics update, where
+ * stepInterval = round(physicsHz / controllerHz), and only continue to apply
+ * the same commands (coast) on the others.  With the defaults the schedule is
+ * exactly that used previously by RunOffline and PuckSwarmTest.  Pucks which
+ * have come to rest can also be skipped by the physics engine (see
+ * Arena.puckSleep).
+ *
+ * The time spent sensing, thinking, on physics (including applying the
+ * robots' commands) and on output is accumulated and reported by 'getProfile'.
+ * The time taken by each physics update is also recorded in the arena's
+ * Metrics.
+ * See the README for the effect of each setting on speed and accuracy.
+ */
+public class Simulator {
+
+	World world;
+	Arena arena;
+
+	float physicsHz, controllerHz;
+	int stepInterval, velocityIterations, positionIterations;
+
+	int updateCount;
+
+	// The time (in nanoseconds) taken by each World.step and the number of
+	// updates, kept with the arena's other metrics.
+	Histogram physicsHistogram;
+	Metrics.Counter updateCounter;
+
+	// Time spent (in nanoseconds) waiting for output to be written and in
+	// total.
+	long flushTime, totalTime;
+
+	public Simulator() {
+		Experiment e = ExperimentManager.getCurrent();
+		physicsHz = e.getProperty("Simulator.physicsHz", 14f, null);
+		controllerHz = e.getProperty("Simulator.controllerHz", 14f / PuckSwarmTest.STEP_INTERVAL, null);
+		velocityIterations = e.getProperty("Simulator.velocityIterations", 3, null);
+		positionIterations = e.getProperty("Simulator.positionIterations", 100, null);
+		stepInterval = Math.max(1, Math.round(physicsHz / controllerHz));
+
+		// A whole new world!  (Reusing an existing world led to a memory leak!)
+		long start = System.nanoTime();
+		world = new World(new Vec2(0, 0), false);
+		arena = new Arena(world, null, false);
+		totalTime += System.nanoTime() - start;
+
+		physicsHistogram = arena.getMetrics().getHistogram("world.step");
+		updateCounter = arena.getMetrics().getCounter("updates");
+	}
+
+	/**
+	 * Perform a single physics update, preceded by a step of all robots if
+	 * one is due.
+	 */
+	public void update() {
+		long start = System.nanoTime();
+		if (updateCount % stepInterval == 0)
+			arena.step(true, true, true, false, 0, false);
+		else
+			arena.coast(true, true, true);
+		updateCount++;
+		updateCounter.increment();
+
+		long physicsStart = System.nanoTime();
+		world.step(1 / physicsHz, velocityIterations, positionIterations);
+		long end = System.nanoTime();
+		physicsHistogram.record(end - physicsStart);
+		totalTime += end - start;
+	}
+
+	/**
+	 * Run until the arena has completed the given number of steps, or until
+	 * the task has converged if the experiment asks for runs to end early
+	 * (see ConvergenceMonitor).
+	 */
+	public void run(int maxStepCount) {
+		while (arena.getStepCount() <= maxStepCount && !arena.isConverged())
+			update();
+	}
+
+	/**
+	 * Dispose of the arena and wait until all of its output has been written.
+	 */
+	public void dispose() {
+		long start = System.nanoTime();
+		arena.dispose();
+		OutputWriter.flush();
+		flushTime = System.nanoTime() - start;
+		totalTime += flushTime;
+	}
+
+	/**
+	 * Return a one-line summary of the time taken by each phase of the
+	 * simulation so far.  Sensing and thinking are summed over all robots,
+	 * so may exceed the total when the arena uses several threads.
+	 */
+	public String getProfile() {
+		long sense = arena.getSenseTime();
+		long think = arena.getThinkTime();
+		long physics = physicsHistogram.getSum() + arena.getMoveTime();
+		long output = arena.getOutputTime() + flushTime;
+		double simulated = updateCount / physicsHz;
+		return "steps: " + arena.getStepCount() + ", updates: " + updateCount
+				+ ", total: " + format(totalTime) + " s"
+				+ " (" + (float) (simulated / (totalTime / 1e9)) + "x real time)"
+				+ ", sense: " + format(sense) + " s" + percent(sense)
+				+ ", think: " + format(think) + " s" + percent(think)
+				+ ", physics: " + format(physics) + " s" + percent(physics)
+				+ ", output: " + format(output) + " s" + percent(output);
+	}
+
+	private static String format(long nanos) {
+		return String.format("%.3f", nanos / 1e9);
+	}
+
+	private String percent(long nanos) {
+		return String.format(" (%.1f%%)", 100.0 * nanos / totalTime);
+	}
+
+	public Arena getArena() {
+		return arena;
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public int getStepInterval() {
+		return stepInterval;
+	}
+}
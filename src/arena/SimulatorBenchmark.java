@@ -0,0 +1,91 @@
+package arena;
+
+import java.util.ArrayList;
+
+import org.jbox2d.common.MathUtils;
+
+import experiment.Experiment;
+import experiment.ExperimentManager;
+
+/**
+ * Measures the speed of the Simulator and the accuracy of its physics for
+ * several settings of its properties.  Each configuration is run from the
+ * same initial state for the same number of steps (after running the first
+ * once to warm up).  The throughput and the profile are reported for each,
+ * along with the mean and maximum overlap of pairs of pucks (sampled after
+ * every step) as a measure of how well the solver resolves contacts.  Usage:
+ *
+ *     SimulatorBenchmark [nRobots] [nPucks] [nSteps]
+ */
+public class SimulatorBenchmark {
+
+	// Each configuration: physicsHz, controllerHz, velocityIterations,
+	// positionIterations and Arena.puckSleep.
+	private static final String[][] CONFIGURATIONS = {
+		{ "14", "" + 14f/3, "3", "100", "false" },
+		{ "14", "" + 14f/3, "3", "10", "false" },
+		{ "14", "" + 14f/3, "3", "100", "true" },
+		{ "14", "" + 14f/3, "3", "10", "true" },
+		{ "" + 28f/3, "" + 14f/3, "3", "10", "true" },
+		{ "28", "" + 14f/3, "3", "100", "false" },
+	};
+
+	public static void main(String[] args) {
+		int nRobots = args.length > 0 ? Integer.valueOf(args[0]) : 10;
+		int nPucks = args.length > 1 ? Integer.valueOf(args[1]) : 100;
+		int nSteps = args.length > 2 ? Integer.valueOf(args[2]) : 1000;
+
+		Experiment e = ExperimentManager.getCurrent();
+		e.setProperty("Arena.nRobots", "" + nRobots);
+		e.setProperty("Arena.nPucks", "" + nPucks);
+
+		for (int c = -1; c < CONFIGURATIONS.length; c++) {
+			String[] config = CONFIGURATIONS[Math.max(c, 0)];
+			e.setProperty("Simulator.physicsHz", config[0]);
+			e.setProperty("Simulator.controllerHz", config[1]);
+			e.setProperty("Simulator.velocityIterations", config[2]);
+			e.setProperty("Simulator.positionIterations", config[3]);
+			e.setProperty("Arena.puckSleep", config[4]);
+			e.resetRandom();
+
+			Simulator simulator = new Simulator();
+			float overlapSum = 0, maxOverlap = 0;
+			int nSamples = 0;
+			for (int s = 1; s <= nSteps; s++) {
+				simulator.run(s);
+				float[] overlap = getOverlap(simulator.getArena().pucks);
+				overlapSum += overlap[0];
+				maxOverlap = Math.max(maxOverlap, overlap[1]);
+				nSamples++;
+			}
+			simulator.dispose();
+			if (c == -1)
+				continue;
+
+			System.out.println("physicsHz " + config[0] + ", controllerHz " + config[1]
+					+ " (step interval " + simulator.getStepInterval() + "), iterations "
+					+ config[2] + "/" + config[3] + ", puckSleep " + config[4]);
+			System.out.println("    steps/s: " + (float) (nSteps / (simulator.totalTime / 1e9))
+					+ ", mean overlap: " + overlapSum / nSamples + ", max overlap: " + maxOverlap);
+			System.out.println("    " + simulator.getProfile());
+		}
+	}
+
+	/**
+	 * Return the mean and maximum overlap of all overlapping pairs of pucks.
+	 */
+	private static float[] getOverlap(ArrayList<Puck> pucks) {
+		float sum = 0, max = 0;
+		int n = 0;
+		for (int i = 0; i < pucks.size(); i++)
+			for (int j = i + 1; j < pucks.size(); j++) {
+				float d = MathUtils.distance(pucks.get(i).body.getPosition(), pucks.get(j).body.getPosition());
+				if (d < Puck.WIDTH) {
+					sum += Puck.WIDTH - d;
+					max = Math.max(max, Puck.WIDTH - d);
+					n++;
+				}
+			}
+		return new float[] { n > 0 ? sum / n : 0, max };
+	}
+}
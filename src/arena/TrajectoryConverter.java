@@ -0,0 +1,101 @@
+package arena;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import sensors.SensedType;
+import utils.FileUtils;
+
+/**
+ * Converts the per-step text files stored by earlier versions of Arena
+ * (stepXXXXXXX_robots.txt and stepXXXXXXX_COLOUR_pucks.txt) into a trajectory
+ * file for each repetition found under the given output directory (i.e. for
+ * each directory OUTPUT_DIR/CODE/INDEX).  The text files are left in place.
+ * Puck orientations are not present in the text files and are stored as NaN.
+ * Usage:
+ *
+ *     TrajectoryConverter OUTPUT_DIR
+ */
+public class TrajectoryConverter {
+
+	private static final char SLASH = File.separatorChar;
+
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("One argument required: OUTPUT_DIR (String)");
+			System.exit(-1);
+		}
+
+		File[] codeDirs = new File(args[0]).listFiles();
+		if (codeDirs == null) {
+			System.err.println("TrajectoryConverter: directory " + args[0] + " does not exist!");
+			System.exit(-1);
+		}
+		for (File codeDir : codeDirs) {
+			if (!codeDir.isDirectory())
+				continue;
+			for (File indexDir : codeDir.listFiles())
+				if (indexDir.isDirectory())
+					convert(indexDir.getPath());
+		}
+	}
+
+	private static void convert(String dirName) {
+		ArrayList<String> robotFiles = FileUtils.getMatchedFilenames("step\\d*_robots.txt", dirName);
+		if (robotFiles.size() == 0)
+			return;
+		Collections.sort(robotFiles);
+
+		TrajectoryWriter writer = null;
+		float[] x = null, y = null, theta = null;
+		for (String robotFile : robotFiles) {
+			String base = robotFile.substring(0, robotFile.indexOf("_robots.txt"));
+			int stepCount = Integer.valueOf(base.substring(4));
+
+			PoseList robotPoses = PoseList.load(dirName + SLASH + robotFile);
+			PositionList[] puckPositions = new PositionList[SensedType.NPUCK_COLOURS];
+			int n = robotPoses.size();
+			for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+				puckPositions[k] = PositionList.load(dirName + SLASH + base + "_" + SensedType.getPuckColorName(k) + "_pucks.txt");
+				if (puckPositions[k] != null)
+					n += puckPositions[k].size();
+			}
+
+			if (writer == null) {
+				int[] types = new int[n];
+				int e = 0;
+				for (int i=0; i<robotPoses.size(); i++)
+					types[e++] = TrajectoryWriter.ROBOT;
+				for (int k=0; k<SensedType.NPUCK_COLOURS; k++)
+					if (puckPositions[k] != null)
+						for (int i=0; i<puckPositions[k].size(); i++)
+							types[e++] = k;
+				writer = new TrajectoryWriter(dirName + SLASH + TrajectoryWriter.FILENAME, types);
+				x = new float[n];
+				y = new float[n];
+				theta = new float[n];
+			} else if (n != writer.getEntityCount()) {
+				System.err.println("TrajectoryConverter: Number of robots and pucks changes in " + dirName);
+				System.exit(-1);
+			}
+
+			int e = 0;
+			for (int i=0; i<robotPoses.size(); i++) {
+				x[e] = (float) robotPoses.get(i).getX();
+				y[e] = (float) robotPoses.get(i).getY();
+				theta[e++] = (float) robotPoses.get(i).getTheta();
+			}
+			for (int k=0; k<SensedType.NPUCK_COLOURS; k++)
+				if (puckPositions[k] != null)
+					for (int i=0; i<puckPositions[k].size(); i++) {
+						x[e] = puckPositions[k].get(i).x;
+						y[e] = puckPositions[k].get(i).y;
+						theta[e++] = Float.NaN;
+					}
+			writer.append(stepCount, x, y, theta);
+		}
+		writer.close();
+		System.out.println("converted " + robotFiles.size() + " steps: " + dirName);
+	}
+}
@@ -0,0 +1,85 @@
+package arena;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a trajectory file written by TrajectoryWriter.  The file is memory
+ * mapped, so any record can be accessed directly.  A partially written record
+ * at the end of the file (e.g. from an interrupted run) is ignored, but a file
+ * without a complete header is reported as truncated.
+ */
+public class TrajectoryReader {
+
+	private MappedByteBuffer buffer;
+	private int nEntities;
+	private int[] types;
+	private int headerSize, recordSize, nRecords;
+
+	public TrajectoryReader(String filename) {
+		try {
+			RandomAccessFile file = new RandomAccessFile(filename, "r");
+			FileChannel channel = file.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			file.close();
+		} catch (IOException e) {
+			System.err.println("TrajectoryReader: Problem reading " + filename);
+			System.exit(-1);
+		}
+
+		if (buffer.capacity() < 12) {
+			System.err.println("TrajectoryReader: " + filename + " is truncated");
+			System.exit(-1);
+		}
+		if (buffer.getInt(0) != TrajectoryWriter.MAGIC ||
+			buffer.getInt(4) != TrajectoryWriter.VERSION) {
+			System.err.println("TrajectoryReader: Not a trajectory file: " + filename);
+			System.exit(-1);
+		}
+		nEntities = buffer.getInt(8);
+		headerSize = 4 * (3 + nEntities);
+		if (nEntities < 0 || buffer.capacity() < headerSize) {
+			System.err.println("TrajectoryReader: " + filename + " is truncated");
+			System.exit(-1);
+		}
+		types = new int[nEntities];
+		for (int e = 0; e < nEntities; e++)
+			types[e] = buffer.getInt(12 + 4 * e);
+
+		recordSize = TrajectoryWriter.getRecordSize(nEntities);
+		nRecords = (buffer.capacity() - headerSize) / recordSize;
+	}
+
+	public int getEntityCount() {
+		return nEntities;
+	}
+
+	/**
+	 * Returns TrajectoryWriter.ROBOT or the colour index of a puck.
+	 */
+	public int getType(int entity) {
+		return types[entity];
+	}
+
+	public int getRecordCount() {
+		return nRecords;
+	}
+
+	public int getStep(int record) {
+		return buffer.getInt(headerSize + record * recordSize);
+	}
+
+	public float getX(int record, int entity) {
+		return buffer.getFloat(headerSize + record * recordSize + 4 + 4 * entity);
+	}
+
+	public float getY(int record, int entity) {
+		return buffer.getFloat(headerSize + record * recordSize + 4 + 4 * (nEntities + entity));
+	}
+
+	public float getTheta(int record, int entity) {
+		return buffer.getFloat(headerSize + record * recordSize + 4 + 4 * (2 * nEntities + entity));
+	}
+}
@@ -0,0 +1,114 @@
+package arena;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes the trajectories of all robots and pucks of one experiment repetition
+ * to a single append-only binary file.  This replaces the text files
+ * previously written by PoseList and PositionList for every stored step.
+ * The file consists of a header followed by a sequence of fixed-size records:
+ *
+ *     header: int MAGIC, int VERSION, int nEntities, int type[nEntities]
+ *     record: int step, float x[nEntities], float y[nEntities],
+ *             float theta[nEntities]
+ *
+ * The type of each entity is ROBOT or, for a puck, its colour index.  All
+ * values are big-endian.  Records are buffered and written through a
+ * FileChannel.  Use TrajectoryReader to read the file back.
+ */
+public class TrajectoryWriter {
+
+	public static final String FILENAME = "trajectory.bin";
+
+	public static final int MAGIC = 0x50535452; // "PSTR"
+	public static final int VERSION = 1;
+
+	// Entity type for robots.  Pucks are identified by their colour index.
+	public static final int ROBOT = -1;
+
+	// Size of the buffer used to accumulate records.
+	public static int BUFFER_SIZE = 1 << 16;
+
+	private String filename;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private int nEntities;
+
+	/**
+	 * Create the given file (replacing any existing one) and write its header.
+	 */
+	public TrajectoryWriter(String filename, int[] types) {
+		this.filename = filename;
+		nEntities = types.length;
+		int headerSize = 4 * (3 + nEntities);
+		buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE,
+				Math.max(headerSize, getRecordSize(nEntities))));
+		try {
+			channel = new FileOutputStream(filename).getChannel();
+		} catch (IOException e) {
+			System.err.println("TrajectoryWriter: Problem creating " + filename);
+			System.exit(-1);
+		}
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(nEntities);
+		for (int type : types)
+			buffer.putInt(type);
+	}
+
+	/**
+	 * Size in bytes of each record for the given number of entities.
+	 */
+	public static int getRecordSize(int nEntities) {
+		return 4 + 3 * 4 * nEntities;
+	}
+
+	/**
+	 * Append a record for the given step.  Each array must hold one entry per
+	 * entity, in the same order as the types given to the constructor.
+	 */
+	public void append(int step, float[] x, float[] y, float[] theta) {
+		if (buffer.remaining() < getRecordSize(nEntities))
+			flush();
+		buffer.putInt(step);
+		for (int e = 0; e < nEntities; e++)
+			buffer.putFloat(x[e]);
+		for (int e = 0; e < nEntities; e++)
+			buffer.putFloat(y[e]);
+		for (int e = 0; e < nEntities; e++)
+			buffer.putFloat(theta[e]);
+	}
+
+	public int getEntityCount() {
+		return nEntities;
+	}
+
+	/**
+	 * Write all buffered records to the file.
+	 */
+	public void flush() {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} catch (IOException e) {
+			System.err.println("TrajectoryWriter: Problem writing " + filename);
+			System.exit(-1);
+		}
+		buffer.clear();
+	}
+
+	public void close() {
+		flush();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("TrajectoryWriter: Problem closing " + filename);
+			System.exit(-1);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package arena;
+
+import localmap.LocalMap;
+import localmap.VFHPlus;
+
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.World;
+
+import sensors.SensedType;
+
+/**
+ * Measures the time taken by VFHPlus.computeTurnAngle and checks that the
+ * incremental update of the primary histogram gives exactly the same result
+ * as recomputing it from the whole occupancy grid.  The simulation is run with
+ * thinking enabled so that the robots move and their local maps change.  After
+ * each step, each robot's local map is given to two VFHPlus instances, one
+ * using each method.  The histograms and chosen angles are compared and the
+ * mean time per call is reported for both.  Usage:
+ *
+ *     VFHBenchmark [nPucks] [nSteps]
+ */
+public class VFHBenchmark {
+
+	public static void main(String[] args) {
+		int nPucks = args.length > 0 ? Integer.valueOf(args[0]) : 100;
+		int nSteps = args.length > 1 ? Integer.valueOf(args[1]) : 300;
+
+		World world = new World(new Vec2(0, 0), false);
+		Arena arena = new Arena(world, null, false);
+		for (int i = arena.pucks.size(); i < nPucks; i++)
+			arena.createPuck(SensedType.getPuckType(i % 2), -Float.MAX_VALUE, Float.MAX_VALUE);
+
+		int nRobots = arena.robots.size();
+		VFHPlus[] fullVFH = new VFHPlus[nRobots];
+		VFHPlus[] incrementalVFH = new VFHPlus[nRobots];
+		long fullTime = 0, incrementalTime = 0, nCalls = 0, nMismatches = 0;
+		for (int s = 0; s < nSteps; s++) {
+			arena.step(true, true, true, false, 0, false);
+
+			// Switch between ignoring pucks and not, as the controllers do.
+			boolean ignorePucks = s % 20 < 10;
+			float targetAngle = (float) Math.sin(s * 0.1);
+			for (int r = 0; r < nRobots; r++) {
+				LocalMap localMap = arena.robots.get(r).simSuite.getLocalMap();
+				if (fullVFH[r] == null) {
+					fullVFH[r] = new VFHPlus(localMap, true);
+					incrementalVFH[r] = new VFHPlus(localMap, true);
+				}
+
+				VFHPlus.INCREMENTAL_PRIMARY = false;
+				long start = System.nanoTime();
+				Float fullAngle = fullVFH[r].computeTurnAngle(localMap, targetAngle, ignorePucks);
+				fullTime += System.nanoTime() - start;
+
+				VFHPlus.INCREMENTAL_PRIMARY = true;
+				start = System.nanoTime();
+				Float incrementalAngle = incrementalVFH[r].computeTurnAngle(localMap, targetAngle, ignorePucks);
+				incrementalTime += System.nanoTime() - start;
+				nCalls++;
+
+				float[] full = fullVFH[r].getPrimaryHistogram();
+				float[] incremental = incrementalVFH[r].getPrimaryHistogram();
+				boolean same = fullAngle == null ? incrementalAngle == null : fullAngle.equals(incrementalAngle);
+				for (int k = 0; k < full.length; k++)
+					if (Float.floatToIntBits(full[k]) != Float.floatToIntBits(incremental[k]))
+						same = false;
+				if (!same) {
+					nMismatches++;
+					System.err.println("step " + s + ", robot " + r + ": full " + fullAngle
+							+ ", incremental " + incrementalAngle);
+				}
+			}
+
+			world.step(1/14f, 3, 100);
+		}
+
+		System.out.println("calls compared: " + nCalls + ", mismatches: " + nMismatches);
+		System.out.println("full (us/call): " + fullTime / 1e3 / nCalls);
+		System.out.println("incremental (us/call): " + incrementalTime / 1e3 / nCalls);
+		if (nMismatches > 0)
+			System.exit(-1);
+	}
+}
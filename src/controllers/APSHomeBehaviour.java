@@ -33,10 +33,10 @@ public class APSHomeBehaviour implements Behaviour, PropertiesListener {
 
 	APS aps;
 	
-	public static float DISTANCE_THRESHOLD;
+	float DISTANCE_THRESHOLD;
 	
 	public APSHomeBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("APSHomeBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -29,7 +29,7 @@ import experiment.PropertiesListener;
  * This controller shares much of its design with the more advanced controllers ProbSeek
  * and CacheCons.
  */
-public class BHDController implements Controller, PropertiesListener {
+public class BHDController implements Controller, PropertiesListener, StatefulController {
 	
 	enum State {
 		FORWARD,
@@ -66,7 +66,7 @@ public class BHDController implements Controller, PropertiesListener {
 	int BACKUP_TIME;
 	
 	public BHDController() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("BHDController");
 		propertiesUpdated();
 	}
 	
@@ -114,7 +114,7 @@ public class BHDController implements Controller, PropertiesListener {
 					+ "step" + String.format("%07d", stepCount)
 					+ "_" + suite.getRobotName()
 					+ "_stateCounts.txt";
-			FileUtils.saveArray(recentStateCounts, filename);
+			FileUtils.saveArrayLater(recentStateCounts, filename);
 	
 			int n = State.values().length;
 			for (int i=0; i<n; i++)
@@ -205,6 +205,10 @@ public class BHDController implements Controller, PropertiesListener {
 		vfh.draw(robotTransform, debugDraw);
 	}
 	
+	public Enum<?> getState() {
+		return state;
+	}
+
 	public String getInfoString() {
 		return "BHD: " + state;
 	}
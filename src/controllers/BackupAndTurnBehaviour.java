@@ -53,7 +53,7 @@ public class BackupAndTurnBehaviour implements Behaviour, PropertiesListener {
 	static int TURNTIME_MIN;
 	
 	public BackupAndTurnBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("BackupAndTurnBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -104,7 +104,7 @@ public class BackupAndTurnBehaviour implements Behaviour, PropertiesListener {
 		int y1 = BOTTOM_Y;
 		for (int i=x0; i<=x1; i++)
 			for (int j=y0; j<=y1; j++) {
-				if (image.pixels[i][j] == SensedType.RED_PUCK) {
+				if (image.get(i, j) == SensedType.RED_PUCK) {
 					proportion++;
 				}
 			}
@@ -28,7 +28,7 @@ public class BehaviourUtils {
 		float sum = 0;
 		for (int i=CARRY_X0; i<=CARRY_X1; i++)
 			for (int j=CARRY_Y0; j<=CARRY_Y1; j++)
-				if (image.pixels[i][j] == puckType)
+				if (image.get(i, j) == puckType)
 					sum++;
 		sum /= CARRY_AREA;
 		return sum > CARRY_THRESHOLD;
@@ -57,8 +57,8 @@ public class BehaviourUtils {
 				for (int i = 0; i < image.width; i++)
 					for (int j = 0; j < image.height; j++) {
 						if (image.getCalibration().getCalibData(i, j).active) {
-							if (image.pixels[i][j] == SensedType.WALL ||
-								SensedType.isPuckType(image.pixels[i][j])) {
+							if (image.get(i, j) == SensedType.WALL ||
+								SensedType.isPuckType(image.get(i, j))) {
 								if (image.getCalibration().getCalibData(i, j).avoidWallLeft)
 									leftSum++;
 								if (image.getCalibration().getCalibData(i, j).avoidWallRight)
@@ -70,7 +70,7 @@ public class BehaviourUtils {
 				for (int i = 0; i < image.width; i++)
 					for (int j = 0; j < image.height; j++) {
 						if (image.getCalibration().getCalibData(i, j).active) {
-							if (image.pixels[i][j] == SensedType.WALL) {
+							if (image.get(i, j) == SensedType.WALL) {
 								if (image.getCalibration().getCalibData(i, j).avoidWallLeft)
 									leftSum++;
 								if (image.getCalibration().getCalibData(i, j).avoidWallRight)
@@ -84,8 +84,8 @@ public class BehaviourUtils {
 				for (int i = 0; i < image.width; i++)
 					for (int j = 0; j < image.height; j++) {
 						if (image.getCalibration().getCalibData(i, j).active) {
-							if (image.pixels[i][j] == SensedType.ROBOT ||
-								SensedType.isPuckType(image.pixels[i][j])) {
+							if (image.get(i, j) == SensedType.ROBOT ||
+								SensedType.isPuckType(image.get(i, j))) {
 								if (image.getCalibration().getCalibData(i, j).avoidOtherRobotLeft)
 									leftSum++;
 								if (image.getCalibration().getCalibData(i, j).avoidOtherRobotRight)
@@ -97,7 +97,7 @@ public class BehaviourUtils {
 				for (int i = 0; i < image.width; i++)
 					for (int j = 0; j < image.height; j++) {
 						if (image.getCalibration().getCalibData(i, j).active) {
-							if (image.pixels[i][j] == SensedType.ROBOT) {
+							if (image.get(i, j) == SensedType.ROBOT) {
 								if (image.getCalibration().getCalibData(i, j).avoidOtherRobotLeft)
 									leftSum++;
 								if (image.getCalibration().getCalibData(i, j).avoidOtherRobotRight)
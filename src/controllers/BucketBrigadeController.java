@@ -30,7 +30,7 @@ import experiment.PropertiesListener;
 /**
  * Initial prototype of bucket brigading.  Forked from CacheConsController.
  */
-public class BucketBrigadeController implements Controller, PropertiesListener {
+public class BucketBrigadeController implements Controller, PropertiesListener, StatefulController {
 	
 	enum State {
 		
@@ -142,7 +142,7 @@ public class BucketBrigadeController implements Controller, PropertiesListener {
 					+ "step" + String.format("%07d", stepCount)
 					+ "_" + suite.getRobotName()
 					+ "_stateCounts.txt";
-			FileUtils.saveArray(recentStateCounts, filename);
+			FileUtils.saveArrayLater(recentStateCounts, filename);
 	
 			int n = State.values().length;
 			for (int i=0; i<n; i++)
@@ -324,6 +324,10 @@ public class BucketBrigadeController implements Controller, PropertiesListener {
 		}
 	}
 	
+	public Enum<?> getState() {
+		return state;
+	}
+
 	public String getInfoString() {
 		return "BucketBrigade: " + state;
 	}
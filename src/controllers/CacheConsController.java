@@ -6,7 +6,6 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
-import java.util.Set;
 
 import localmap.Cluster;
 import localmap.LocalMap;
@@ -40,7 +39,7 @@ import experiment.PropertiesListener;
  * was forked off HPMBehaviour.  This version is intended to be cleaner, removes some 
  * options, and introduces others.
  */
-public class CacheConsController implements Controller, PropertiesListener {
+public class CacheConsController implements Controller, PropertiesListener, StatefulController {
 	
 	enum State {
 		
@@ -203,7 +202,7 @@ public class CacheConsController implements Controller, PropertiesListener {
 	float CACHE_SEPARATION_DISTANCE;
 	
 	public CacheConsController(boolean presetCaches) {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("CacheConsController");
 		propertiesUpdated();
 		
 		// Added for ECAL workshop and "perfect information" extension to SI paper
@@ -324,7 +323,7 @@ public class CacheConsController implements Controller, PropertiesListener {
 					+ "step" + String.format("%07d", stepCount)
 					+ "_" + suite.getRobotName()
 					+ "_stateCounts.txt";
-			FileUtils.saveArray(recentStateCounts, filename);
+			FileUtils.saveArrayLater(recentStateCounts, filename);
 	
 			int n = State.values().length;
 			for (int i=0; i<n; i++)
@@ -355,7 +354,7 @@ public class CacheConsController implements Controller, PropertiesListener {
 						
 			// First go through all visible clusters (of each type) and determine if the cache
 			// cluster is visible.  If so, update its remembered size.
-			for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+			for (int k=0; k<localMap.getPalette().size(); k++) {
 				if (cachePoints[k] != null) {
 					Cluster cacheCluster = null;
 // BUG Discovered on 29 August 2013.
@@ -369,7 +368,7 @@ MessageBoard.getMessageBoard().post(suite.getRobotName() + " " + "new cache size
 				}
 			}
 	
-			for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+			for (int k=0; k<localMap.getPalette().size(); k++) {
 				// In all options for new cache selection, the candidate is the largest cluster in view.
 				Cluster candidate = null;
 				for (Cluster c : localMap.getUnfilteredClustersOfType(k))
@@ -391,7 +390,7 @@ MessageBoard.getMessageBoard().post(suite.getRobotName() + " " + "new cache size
 
 		// Mask puck colours that don't yet have a corresponding cache.  This prevents
 		// them from being selected as targets for pick-up.
-		for (int k=0; k < SensedType.NPUCK_COLOURS; k++)
+		for (int k=0; k < localMap.getPalette().size(); k++)
 			if (cachePoints[k] == null)
 				localMap.postFilterClusters(SensedType.getPuckType(k));
 
@@ -547,7 +546,7 @@ MessageBoard.getMessageBoard().post(suite.getRobotName() + " " + "new cache size
 					cachePointList.add((float)cachePoints[k].getX(), (float)cachePoints[k].getY());
 			}
 			
-			cachePointList.save(base + "_" + suite.getRobotName() + "_cachePoints.txt");
+			cachePointList.saveLater(base + "_" + suite.getRobotName() + "_cachePoints.txt");
 		}
 
 		updateStateCounts(suite);
@@ -663,12 +662,7 @@ MessageBoard.getMessageBoard().post(suite.getRobotName() + " " + "new cache size
 		Vec2 cp = getCachePointInRobotCoords(targetCluster.puckType);
 
 		// Now see if any pucks in the target cluster lie within threshold distance.
-		Set<Vec2> set = targetCluster.subgraph.vertexSet();
-		for (Vec2 v : set)
-			if (MathUtils.distance(v, cp) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
-				return true;
-
-		return false;
+		return targetCluster.contains(cp);
 	}
 
 	private boolean carriedPuckInCacheCluster(LocalMap localMap) {
@@ -684,12 +678,7 @@ MessageBoard.getMessageBoard().post(suite.getRobotName() + " " + "new cache size
 		Vec2 cp = getCachePointInRobotCoords(SensedType.getPuckIndex(localMap.getCarriedType()));
 		
 		// Now see if any pucks in the carried cluster lie within threshold distance.
-		Set<Vec2> set = carriedCluster.subgraph.vertexSet();
-		for (Vec2 v : set)
-			if (MathUtils.distance(v, cp) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
-				return true;
-
-		return false;
+		return carriedCluster.contains(cp);
 	}
 
 	/** Get the position of the cache point in robot-coordinates. */
@@ -733,6 +722,10 @@ MessageBoard.getMessageBoard().post(suite.getRobotName() + " " + "new cache size
 			}
 	}
 	
+	public Enum<?> getState() {
+		return state;
+	}
+
 	public String getInfoString() {
 		return "CacheCons: " + state + ", sizes: " + Arrays.toString(rememberedCacheSizes);
 	}
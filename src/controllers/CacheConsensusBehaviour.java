@@ -155,7 +155,7 @@ float[] homeClusterSizes = new float[SensedType.NPUCK_COLOURS];
 float K4, SIZE_DECAY;
 	
 	public CacheConsensusBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("CacheConsensusBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -266,7 +266,7 @@ SIZE_DECAY = ExperimentManager.getCurrent().getProperty("HPMBehaviour.SIZE_DECAY
 		// Allow the home selectors to have a look at the clusters of each type in the local map
 		// and potentially select a new or initial home point for each type.
 		if (robotPose != null) {
-			for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+			for (int k=0; k<localMap.getPalette().size(); k++) {
 				Cluster newHomeCluster = null;
 /* First go through all visible clusters (of this type) and determine if the home
  * cluster is visible.  If so, update its homeClusterSIze				
@@ -336,7 +336,7 @@ if (largest != null) {
 
 		// Mask puck colours that don't yet have a corresponding home point.  This prevents
 		// them from being selected as targets for pick-up.
-		for (int k=0; k < SensedType.NPUCK_COLOURS; k++)
+		for (int k=0; k < localMap.getPalette().size(); k++)
 			if (homePoints[k] == null)
 				localMap.postFilterClusters(SensedType.getPuckType(k));
 
@@ -514,7 +514,7 @@ homeClusterSizes[type] = newHomeCluster.size;
 
 		// Now see if any pucks in the target cluster lie within threshold
 		// distance of the home position.
-		Set<Vec2> set = targetCluster.subgraph.vertexSet();
+		Vec2[] set = targetCluster.pucks;
 		for (Vec2 v : set)
 			if (MathUtils.distance(v, home) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
 				return true;
@@ -536,7 +536,7 @@ homeClusterSizes[type] = newHomeCluster.size;
 		
 		// Now see if any pucks in the carried cluster lie within threshold
 		// distance.
-		Set<Vec2> set = carriedCluster.subgraph.vertexSet();
+		Vec2[] set = carriedCluster.pucks;
 		for (Vec2 v : set)
 			if (MathUtils.distance(v, home) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
 				return true;
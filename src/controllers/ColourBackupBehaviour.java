@@ -83,7 +83,7 @@ public class ColourBackupBehaviour implements Behaviour, PropertiesListener {
 	static boolean CLUSTER_MEMORY;
 	
 	public ColourBackupBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("ColourBackupBehaviour");
 		propertiesUpdated();
 				
 		proportions = new float[SensedType.NPUCK_COLOURS];
@@ -177,7 +177,7 @@ public class ColourBackupBehaviour implements Behaviour, PropertiesListener {
 			proportions[k] = 0;
 			for (int i=x0; i<=x1; i++)
 				for (int j=y0; j<=y1; j++) {
-					if (SensedType.isPuckOfColor(image.pixels[i][j], puckColors[k])) {
+					if (SensedType.isPuckOfColor(image.get(i, j), puckColors[k])) {
 						if (USE_GROUND_AREA)
 							proportions[k] += image.getCalibration().getCalibData(i, j).groundArea;
 						else
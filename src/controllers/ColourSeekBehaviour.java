@@ -59,7 +59,7 @@ public class ColourSeekBehaviour implements Behaviour, PropertiesListener {
 	static boolean FILTER_UNREACHABLE;
 	
 	public ColourSeekBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("ColourSeekBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -42,7 +42,7 @@ public class EscapeOthersBehaviour implements Behaviour, PropertiesListener {
 	int ESCAPE_TIME;
 		
 	public EscapeOthersBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("EscapeOthersBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -63,7 +63,7 @@ public class EscapeOthersBehaviour implements Behaviour, PropertiesListener {
 		for (int i=0; i<image.width; i++)
 			for (int j=0; j<image.height; j++)
 				if (image.getCalibration().getCalibData(i, j).active &&
-					image.pixels[i][j] == SensedType.ROBOT)
+					image.get(i, j) == SensedType.ROBOT)
 					prop++;
 		prop /= image.getCalibration().getNActivePixels();
 
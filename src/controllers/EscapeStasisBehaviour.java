@@ -46,7 +46,7 @@ public class EscapeStasisBehaviour implements Behaviour, PropertiesListener {
 	int ESCAPE_TIME;
 		
 	public EscapeStasisBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("EscapeStasisBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -73,7 +73,7 @@ public class EscapeStasisBehaviour implements Behaviour, PropertiesListener {
 		for (int i=0; i<image.width; i++)
 			for (int j=0; j<image.height; j++)
 				if (image.getCalibration().getCalibData(i, j).active &&
-					image.pixels[i][j] != lastImage.pixels[i][j])
+					image.get(i, j) != lastImage.get(i, j))
 					prop++;
 		prop /= image.getCalibration().getNActivePixels();
 		//System.out.println("prop:" + prop);
@@ -130,7 +130,7 @@ public class HPMBehaviour implements Behaviour, PropertiesListener {
 	float HOME_SEPARATION_DISTANCE;
 	
 	public HPMBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("HPMBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -226,7 +226,7 @@ public class HPMBehaviour implements Behaviour, PropertiesListener {
 		
 		// Allow the home selectors to have a look at the clusters of each type in the local map
 		// and potentially select a new or initial home point for each type.
-		for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+		for (int k=0; k<localMap.getPalette().size(); k++) {
 			Cluster newHomeCluster = null;
 			if (localizers[k] == null) {
 				initialHomeSelectors[k].inspect(localMap, localMap.getClustersOfType(k), carrying, carriedType);
@@ -252,7 +252,7 @@ public class HPMBehaviour implements Behaviour, PropertiesListener {
 
 		// Mask puck colours that don't yet have a corresponding home point.  This prevents
 		// them from being selected as targets for pick-up.
-		for (int k=0; k < SensedType.NPUCK_COLOURS; k++)
+		for (int k=0; k < localMap.getPalette().size(); k++)
 			if (localizers[k] == null)
 				localMap.postFilterClusters(SensedType.getPuckType(k));
 
@@ -392,7 +392,7 @@ public class HPMBehaviour implements Behaviour, PropertiesListener {
 
 		// Now see if any pucks in the target cluster lie within threshold
 		// distance of the home position.
-		Set<Vec2> set = targetCluster.subgraph.vertexSet();
+		Vec2[] set = targetCluster.pucks;
 		for (Vec2 v : set)
 			if (MathUtils.distance(v, home) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
 				return true;
@@ -411,7 +411,7 @@ public class HPMBehaviour implements Behaviour, PropertiesListener {
 		
 		// Now see if any pucks in the carried cluster lie within threshold
 		// distance.
-		Set<Vec2> set = carriedCluster.subgraph.vertexSet();
+		Vec2[] set = carriedCluster.pucks;
 		for (Vec2 v : set)
 			if (MathUtils.distance(v, home) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
 				return true;
@@ -36,10 +36,10 @@ public class OdoHomeBehaviour implements Behaviour, PropertiesListener {
 
 	Localizer localizer = null;
 	
-	public static float DISTANCE_THRESHOLD;
+	float DISTANCE_THRESHOLD;
 	
 	public OdoHomeBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("OdoHomeBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -33,7 +33,7 @@ import experiment.PropertiesListener;
 /**
  * Benchmark clustering algorithm for SI 2012 paper.
  */
-public class ProbSeekController implements Controller, PropertiesListener {
+public class ProbSeekController implements Controller, PropertiesListener, StatefulController {
 	
 	enum State {
 		PU_SCAN, 	// Pick-up scan
@@ -100,7 +100,7 @@ public class ProbSeekController implements Controller, PropertiesListener {
 	float WANDER_ST_DEV;
 	
 	public ProbSeekController() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("ProbSeekController");
 		propertiesUpdated();
 	}
 	
@@ -164,7 +164,7 @@ public class ProbSeekController implements Controller, PropertiesListener {
 					+ "step" + String.format("%07d", stepCount)
 					+ "_" + suite.getRobotName()
 					+ "_stateCounts.txt";
-			FileUtils.saveArray(recentStateCounts, filename);
+			FileUtils.saveArrayLater(recentStateCounts, filename);
 	
 			int n = State.values().length;
 			for (int i=0; i<n; i++)
@@ -329,6 +329,10 @@ public class ProbSeekController implements Controller, PropertiesListener {
 		}
 	}
 	
+	public Enum<?> getState() {
+		return state;
+	}
+
 	public String getInfoString() {
 		return "ProbSeek: " + state + ", " + targetSelector.getStatusString();
 	}
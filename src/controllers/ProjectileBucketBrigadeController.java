@@ -30,7 +30,7 @@ import experiment.PropertiesListener;
 /**
  * Initial prototype of projectile bucket brigading.  Forked from BucketBrigadeController.
  */
-public class ProjectileBucketBrigadeController implements KickingController, PropertiesListener {
+public class ProjectileBucketBrigadeController implements KickingController, PropertiesListener, StatefulController {
 	
 	enum State {
 		
@@ -144,7 +144,7 @@ public class ProjectileBucketBrigadeController implements KickingController, Pro
 					+ "step" + String.format("%07d", stepCount)
 					+ "_" + suite.getRobotName()
 					+ "_stateCounts.txt";
-			FileUtils.saveArray(recentStateCounts, filename);
+			FileUtils.saveArrayLater(recentStateCounts, filename);
 	
 			int n = State.values().length;
 			for (int i=0; i<n; i++)
@@ -297,6 +297,10 @@ public class ProjectileBucketBrigadeController implements KickingController, Pro
 		}
 	}
 	
+	public Enum<?> getState() {
+		return state;
+	}
+
 	public String getInfoString() {
 		return "ProjectileBucketBrigade: " + state;
 	}
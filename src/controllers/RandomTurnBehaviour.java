@@ -28,7 +28,7 @@ public class RandomTurnBehaviour implements Behaviour {
 	// The time at which this behaviour was entered and the current time step.
 	int startCount, stepCount;
 
-	Random rng = ExperimentManager.getCurrent().getRandom();
+	Random rng = ExperimentManager.getCurrent().getRandom("RandomTurnBehaviour");
 
 	STCameraImage image;
 
@@ -60,7 +60,7 @@ public class SeekBehaviour implements Behaviour, PropertiesListener {
 	static boolean FILTER_UNREACHABLE;
 
 	public SeekBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("SeekBehaviour");
 		propertiesUpdated();
 	}
 	
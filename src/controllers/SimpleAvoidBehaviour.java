@@ -38,7 +38,7 @@ public class SimpleAvoidBehaviour implements Behaviour, PropertiesListener {
 	static int DIST_THRESHOLD;
 	
 	public SimpleAvoidBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("SimpleAvoidBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -80,8 +80,8 @@ public class SimpleAvoidBehaviour implements Behaviour, PropertiesListener {
 			for (int j = 0; j < image.height; j++) {
 				sensors.Calibration.CalibDataPerPixel calib = image.getCalibration().getCalibData(i, j);
 				if (calib.active) {
-					if ((image.pixels[i][j] == SensedType.WALL) ||
-					    (image.pixels[i][j] == SensedType.ROBOT)) {
+					if ((image.get(i, j) == SensedType.WALL) ||
+					    (image.get(i, j) == SensedType.ROBOT)) {
 						float dist = (float)Math.sqrt(calib.Xr*calib.Xr + calib.Yr*calib.Yr);
 						if (dist < DIST_THRESHOLD) {
 							closestDist = dist;
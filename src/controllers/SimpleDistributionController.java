@@ -30,7 +30,7 @@ import experiment.PropertiesListener;
 /**
  * Individual distribution behaviour.  No bucket brigading.  Forked from BucketBrigadeController.
  */
-public class SimpleDistributionController implements Controller, PropertiesListener {
+public class SimpleDistributionController implements Controller, PropertiesListener, StatefulController {
 	
 	enum State {
 		
@@ -147,7 +147,7 @@ public class SimpleDistributionController implements Controller, PropertiesListe
 					+ "step" + String.format("%07d", stepCount)
 					+ "_" + suite.getRobotName()
 					+ "_stateCounts.txt";
-			FileUtils.saveArray(recentStateCounts, filename);
+			FileUtils.saveArrayLater(recentStateCounts, filename);
 	
 			int n = State.values().length;
 			for (int i=0; i<n; i++)
@@ -298,6 +298,10 @@ public class SimpleDistributionController implements Controller, PropertiesListe
 		}
 	}
 	
+	public Enum<?> getState() {
+		return state;
+	}
+
 	public String getInfoString() {
 		return "SimpleDistribution: " + state;
 	}
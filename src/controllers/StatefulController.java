@@ -0,0 +1,9 @@
+package controllers;
+
+/**
+ * A controller which is always in one of the states of an enum.  Arena counts
+ * the steps that robots spend in each state (see utils.Metrics).
+ */
+public interface StatefulController {
+	Enum<?> getState();
+}
@@ -39,7 +39,7 @@ public class SteerAwayBehaviour implements Behaviour, PropertiesListener {
 	public static boolean AVOID_PUCKS_AS_ROBOTS, AVOID_PUCKS_AS_WALLS;
 	
 	public SteerAwayBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("SteerAwayBehaviour");
 		propertiesUpdated();
 	}
 	
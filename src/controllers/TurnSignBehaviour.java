@@ -40,7 +40,7 @@ public class TurnSignBehaviour implements Behaviour, PropertiesListener {
 	
 
 	public TurnSignBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("TurnSignBehaviour");
 		propertiesUpdated();
 	}
 	@Override
@@ -46,7 +46,7 @@ public class VFHSteerAwayBehaviour implements Behaviour, PropertiesListener {
 	public static float BIG_TURN_PROB;
 
 	public VFHSteerAwayBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("VFHSteerAwayBehaviour");
 		propertiesUpdated();
 	}
 	
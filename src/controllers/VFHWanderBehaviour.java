@@ -34,10 +34,10 @@ public class VFHWanderBehaviour implements Behaviour, PropertiesListener {
 	boolean stuck;
 	
 	// The standard deviation of the random process that influences wandering.
-	public static float ST_DEV;
+	float ST_DEV;
 	
 	public VFHWanderBehaviour() {
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("VFHWanderBehaviour");
 		propertiesUpdated();
 	}
 	
@@ -1,7 +1,6 @@
 package controllers.cluster;
 
 import java.util.ArrayList;
-import java.util.Set;
 
 import localmap.Cluster;
 import localmap.LocalMap;
@@ -77,27 +76,26 @@ public abstract class ClusterTargetSelector {
 	 */
 	protected Cluster selectPickupPuckCluster(Cluster cluster) {
 		// Select the two pucks with largest and smallest Yr value.
-		Set<Vec2> set = cluster.subgraph.vertexSet();
 		float largestYr = Float.NEGATIVE_INFINITY;
 		float smallestYr = Float.POSITIVE_INFINITY;
-		Vec2 largestYrVec = null, smallestYrVec = null;
-		for (Vec2 v : set) {
+		int largestYrIndex = -1, smallestYrIndex = -1;
+		for (int i=0; i<cluster.pucks.length; i++) {
+			Vec2 v = cluster.pucks[i];
 			if (v.y > largestYr) {
 				largestYr = v.y;
-				largestYrVec = v;
+				largestYrIndex = i;
 			}
 			if (v.y < smallestYr) {
 				smallestYr = v.y;
-				smallestYrVec = v;
+				smallestYrIndex = i;
 			}
 		}
 		
 		// Of these two, choose the one with the smaller degree.
-		if (cluster.subgraph.degreeOf(largestYrVec) <= 
-			cluster.subgraph.degreeOf(smallestYrVec))
-			return new Cluster(largestYrVec, cluster.puckType);
+		if (cluster.degrees[largestYrIndex] <= cluster.degrees[smallestYrIndex])
+			return new Cluster(cluster.pucks[largestYrIndex], cluster.puckType);
 		else
-			return new Cluster(smallestYrVec, cluster.puckType);
+			return new Cluster(cluster.pucks[smallestYrIndex], cluster.puckType);
 	}
 	
 	/**
@@ -26,7 +26,7 @@ public class ExtremaSelector extends ClusterTargetSelector {
 		this.K1 = K1;
 		this.K2 = K2;
 		this.alwaysTargetIsolated = alwaysTargetIsolated;
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("ExtremaSelector");
 	}
 	
 	public void inspect() {
@@ -22,7 +22,7 @@ public class PieSelector extends ClusterTargetSelector {
 	public PieSelector(float K1, float K2) {
 		this.K1 = K1;
 		this.K2 = K2;
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("PieSelector");
 	}
 	
 	@Override
@@ -12,6 +12,12 @@ public class Experiment {
 	protected int seed;
 	protected String propertiesFilename;
 	protected Properties properties;
+
+	// The root of the experiment's keyed random streams, and the node from
+	// which getRandom(purpose) takes streams on particular threads (see
+	// setThreadStreams).
+	protected RandomStreams streams;
+	protected ThreadLocal<RandomStreams> threadStreams = new ThreadLocal<RandomStreams>();
 	
 	private static final char SLASH = File.separatorChar;
 
@@ -20,6 +26,7 @@ public class Experiment {
 	 */
 	Experiment(int seed, String outputDir, String propertiesFilename) {
 		this.random = new Random(seed);
+		this.streams = new RandomStreams(seed);
 		this.seed = seed;
 		this.propertiesFilename = propertiesFilename;
 
@@ -45,6 +52,7 @@ public class Experiment {
 	Experiment(String code, int seed, String outputDir) {
 		this.code = code;
 		this.random = new Random(seed);
+		this.streams = new RandomStreams(seed);
 		this.seed = seed;
 
 		// Create a properties object but leave it as empty.
@@ -69,10 +77,68 @@ public class Experiment {
 		return seed;
 	}
 	
+	/**
+	 * Return the experiment's shared random stream.
+	 */
 	public Random getRandom() {
 		return random;
 	}
 
+	/**
+	 * Return a random stream for the named purpose (usually the name of the
+	 * calling class).  If a node of keyed streams has been set for the
+	 * current thread, this is a new stream from that node.  Otherwise it is
+	 * the experiment's shared stream.
+	 */
+	public Random getRandom(String purpose) {
+		RandomStreams s = threadStreams.get();
+		if (s != null)
+			return s.getRandom(purpose);
+		return random;
+	}
+
+	/**
+	 * Restart the shared random stream from the experiment's seed, as if the
+	 * experiment had just been created.
+	 */
+	public void resetRandom() {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Return the root of the experiment's keyed random streams.
+	 */
+	public RandomStreams getStreams() {
+		return streams;
+	}
+
+	/**
+	 * Have getRandom(purpose) hand out streams from 's', rather than the
+	 * experiment's shared stream, for all calls made from the current thread.
+	 * Passing null restores the shared stream.  Arena uses this to give each
+	 * robot and each of its components a stream of its own, so that the
+	 * outcome depends neither on the number of threads nor on the order in
+	 * which the robots are processed.
+	 */
+	public void setThreadStreams(RandomStreams s) {
+		if (s == null)
+			threadStreams.remove();
+		else
+			threadStreams.set(s);
+	}
+
+	public RandomStreams getThreadStreams() {
+		return threadStreams.get();
+	}
+
+	/**
+	 * Set the given property, overriding any value loaded from the
+	 * experiment's .properties files.
+	 */
+	public void setProperty(String key, String value) {
+		properties.setProperty(key, value);
+	}
+
 	public int getProperty(String key, int value, PropertiesListener listener) {
 		return Integer.valueOf(properties.getProperty(key, value + ""));
 	}
@@ -1,5 +1,6 @@
 package experiment;
 
+import java.util.ArrayList;
 
 /**
  * Represents a block of experiments.  Such a block consist of one repeated
@@ -32,6 +33,14 @@ public class ExperimentBlock {
 		return experiments[index];
 	}
 
+	/**
+	 * Add this block's current experiment and all that follow it to 'list'.
+	 */
+	void addRemaining(ArrayList<Experiment> list) {
+		for (int i=index; i<size; i++)
+			list.add(experiments[i]);
+	}
+
 	public boolean hasNext() {
 		return index < size - 1;
 	}
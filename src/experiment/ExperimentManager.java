@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Properties;
 
 import utils.FileUtils;
+import utils.OutputWriter;
 
 /**
  * An all-static class providing management of Experiments to client classes.
@@ -27,6 +28,10 @@ public class ExperimentManager {
 	// in 'getCurrent' only if needed.
 	private static Experiment liveExperiment = null;
 
+	// Experiments being run on particular threads (see setThreadExperiment).
+	// These take precedence over the current block's experiment.
+	private static ThreadLocal<Experiment> threadExperiment = new ThreadLocal<Experiment>();
+
 	// Used when creating all Experiment possiblities.
 	private static int index = 0;
 
@@ -399,8 +404,10 @@ common.put("Arena.maxStepCount", "20000");
 		// experiment).  Extract the code for each and place in 'codes'.
 		ArrayList<String> filenames = FileUtils.getMatchedFilenames(".*.properties", outputDir);
 		filenames.remove("common.properties");
-		for (String code : filenames)
-			System.out.println("Found code: " + code);
+		for (int i = 0; i < filenames.size(); i++) {
+			System.out.println("Found code: " + filenames.get(i));
+			filenames.set(i, outputDir + File.separatorChar + filenames.get(i));
+		}
 		
 		// Read some necessary properties from 'common.properties'.
 		int repetitions = 0;
@@ -496,7 +503,10 @@ common.put("Arena.maxStepCount", "20000");
 	}
 
 	public static Experiment getCurrent() {
-		if (activated && !finished)
+		Experiment e = threadExperiment.get();
+		if (e != null)
+			return e;
+		if (activated && !finished && currentBlock != null)
 			return currentBlock.getCurrent();
 		else {
 			// ExperimentManager hasn't been activated, so we assume we are in
@@ -516,6 +526,29 @@ common.put("Arena.maxStepCount", "20000");
 		}
 	}
 
+	/**
+	 * Have getCurrent return 'e' for all calls made from the current thread.
+	 * Passing null restores the default behaviour.  This allows several
+	 * experiments to be run at once, each on its own thread.
+	 */
+	public static void setThreadExperiment(Experiment e) {
+		if (e == null)
+			threadExperiment.remove();
+		else
+			threadExperiment.set(e);
+	}
+
+	/**
+	 * Returns all experiments that remain to be run, in the order that
+	 * 'next' would visit them.  Must be called after 'activate'.
+	 */
+	public static ArrayList<Experiment> getRemaining() {
+		ArrayList<Experiment> remaining = new ArrayList<Experiment>();
+		for (int b = blockIndex; b < blocks.size(); b++)
+			blocks.get(b).addRemaining(remaining);
+		return remaining;
+	}
+
 	public static boolean hasNext() {
 		int nb = blocks.size();
 		finished = (blockIndex == nb - 1) && !blocks.get(nb - 1).hasNext();
@@ -523,6 +556,9 @@ common.put("Arena.maxStepCount", "20000");
 	}
 
 	public static void next() {
+		// Make sure all output from the experiment just ended is written.
+		OutputWriter.flush();
+
 		if (currentBlock.hasNext())
 			currentBlock.next();
 		else {
@@ -550,6 +586,17 @@ common.put("Arena.maxStepCount", "20000");
 			readExistingExperiments();
 	}
 
+	/**
+	 * Activate the manager for the sweep declared in directory 'oDir' (see
+	 * Sweep), which is also the output directory.  No experiment is current
+	 * on any thread until one is set by setThreadExperiment.
+	 */
+	public static Sweep activateSweep(String oDir) {
+		outputDir = oDir;
+		activated = true;
+		return new Sweep(oDir);
+	}
+
 	public static boolean isActive() {
 		return activated && !finished;
 	}
@@ -0,0 +1,71 @@
+package experiment;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * A hierarchy of independent random streams derived from an experiment's
+ * seed.  Each node is reached from the root by a path of keys (e.g. "Arena",
+ * then a robot's name) and hands out streams by purpose (the name of the
+ * component which will draw from it).  The seed of a stream is a hash of the
+ * experiment's seed and the keys along its path, so no stream depends on
+ * which other streams exist, or on the order in which they are created or
+ * drawn from.  If a node is asked for the same purpose more than once, the
+ * second request receives the stream for "purpose#1", the third that for
+ * "purpose#2" and so on.
+ *
+ * The streams are java.util.Random, as expected by the components which use
+ * them.  Each is drawn from by one entity only, so is never contended.
+ */
+public class RandomStreams {
+
+	// The increment of SplitMix64 (2^64 divided by the golden ratio).
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final long seed;
+
+	// Number of streams handed out so far for each purpose.
+	private HashMap<String, Integer> nRequests = new HashMap<String, Integer>();
+
+	public RandomStreams(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Return the node below this one with the given key.  Asking twice for
+	 * the same key gives nodes which hand out the same streams.
+	 */
+	public RandomStreams getChild(String key) {
+		return new RandomStreams(derive(seed, key));
+	}
+
+	/**
+	 * Return a new stream for the given purpose.
+	 */
+	public synchronized Random getRandom(String purpose) {
+		Integer n = nRequests.get(purpose);
+		nRequests.put(purpose, n == null ? 1 : n + 1);
+		return new Random(derive(seed, n == null ? purpose : purpose + "#" + n));
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Return the seed of the node or stream with the given key below the
+	 * node with the given seed.
+	 */
+	public static long derive(long seed, String key) {
+		return mix(mix(seed) + GOLDEN_GAMMA * (((long) key.length() << 32) | (key.hashCode() & 0xFFFFFFFFL)));
+	}
+
+	/**
+	 * The finalizer of SplitMix64, which maps nearby values to unrelated ones.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,184 @@
+package experiment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+
+/**
+ * A sweep over combinations of property values, declared in the file
+ * FILENAME in the output directory rather than in ExperimentManager.  The
+ * file is in .properties format.  'sweep.vary' lists the names of the
+ * properties to vary, in order, and each of these is given a comma-separated
+ * list of values.  All other properties are common to every configuration,
+ * and 'repetitions' gives the number of seeds with which each is run.  For
+ * example, the following defines six configurations:
+ *
+ *     repetitions=20
+ *     Arena.maxStepCount=20000
+ *     sweep.vary=controllerType,Arena.nRobots
+ *     controllerType=ProbSeek,CacheCons
+ *     Arena.nRobots=4,16,64
+ *
+ * The configurations are numbered as ExperimentManager would expand them
+ * (the last property varying fastest), and the code of each is formed in
+ * the same way.  Nothing is expanded up front: a configuration is decoded
+ * from its number when needed, and its .properties file (read by the
+ * analysis tools) is written when its first experiment is created.  The
+ * common properties are written to common.properties on construction.
+ */
+public class Sweep {
+
+	public static final String FILENAME = "sweep.txt";
+
+	private String outputDir;
+
+	private Properties common = new Properties();
+
+	// The varied properties and their values.
+	private String[] names;
+	private String[][] values;
+
+	private int repetitions;
+
+	// Whether the .properties file of each configuration has been written.
+	private boolean[] written;
+
+	public Sweep(String outputDir) {
+		this.outputDir = outputDir;
+
+		Properties file = new Properties();
+		String filename = outputDir + File.separatorChar + FILENAME;
+		try {
+			FileInputStream in = new FileInputStream(filename);
+			file.load(in);
+			in.close();
+		} catch (Exception e) {
+			System.err.println("Sweep: Problem loading " + filename);
+			System.exit(-1);
+		}
+
+		names = split(file.getProperty("sweep.vary", ""));
+		values = new String[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			values[i] = split(file.getProperty(names[i], ""));
+			if (values[i].length == 0) {
+				System.err.println("Sweep: No values given for " + names[i]);
+				System.exit(-1);
+			}
+		}
+		for (String key : file.stringPropertyNames())
+			if (!key.equals("sweep.vary") && !isVaried(key))
+				common.setProperty(key, file.getProperty(key));
+
+		repetitions = Integer.valueOf(common.getProperty("repetitions", "1"));
+		common.setProperty("repetitions", repetitions + "");
+		written = new boolean[getConfigurationCount()];
+
+		String commonFilename = outputDir + File.separatorChar + ExperimentManager.COMMON_PROPERTIES_FILENAME;
+		try {
+			FileOutputStream out = new FileOutputStream(commonFilename);
+			common.store(out, "Written from " + FILENAME);
+			out.close();
+		} catch (Exception e) {
+			System.err.println("Sweep: Problem storing " + commonFilename);
+			System.exit(-1);
+		}
+	}
+
+	private static String[] split(String list) {
+		ArrayList<String> items = new ArrayList<String>();
+		for (String item : list.split(","))
+			if (item.trim().length() > 0)
+				items.add(item.trim());
+		return items.toArray(new String[items.size()]);
+	}
+
+	private boolean isVaried(String key) {
+		for (String name : names)
+			if (name.equals(key))
+				return true;
+		return false;
+	}
+
+	public int getConfigurationCount() {
+		int n = 1;
+		for (String[] v : values)
+			n *= v.length;
+		return n;
+	}
+
+	public int getRepetitions() {
+		return repetitions;
+	}
+
+	/**
+	 * Return the varied properties of configuration c, along with its code.
+	 */
+	public Properties getConfiguration(int c) {
+		Properties props = new Properties();
+		for (int i = names.length - 1; i >= 0; i--) {
+			props.setProperty(names[i], values[i][c % values[i].length]);
+			c /= values[i].length;
+		}
+		props.setProperty("code", getCode(props));
+		return props;
+	}
+
+	public String getCode(int c) {
+		return getConfiguration(c).getProperty("code");
+	}
+
+	private String getCode(Properties props) {
+		if (names.length == 0)
+			return common.getProperty("code", "sweep");
+		String code = "";
+		for (int i = 0; i < names.length; i++) {
+			code += props.getProperty(names[i]);
+			if (i != names.length - 1)
+				code += "_";
+		}
+		return code.replace('-', 'm');
+	}
+
+	/**
+	 * Return an estimate of the time taken by one experiment of
+	 * configuration c, in arbitrary units.  This is the number of steps times
+	 * the number of robots plus a twentieth of the number of pucks, which
+	 * roughly reflects their costs per step.
+	 */
+	public long getCost(int c) {
+		Properties props = getConfiguration(c);
+		long steps = Long.valueOf(getProperty(props, "Arena.maxStepCount", "10000"));
+		float robots = Float.valueOf(getProperty(props, "Arena.nRobots", "4"));
+		float pucks = Float.valueOf(getProperty(props, "Arena.nPucks", "10"));
+		return (long) (steps * (robots + pucks / 20));
+	}
+
+	private String getProperty(Properties props, String key, String defaultValue) {
+		return props.getProperty(key, common.getProperty(key, defaultValue));
+	}
+
+	/**
+	 * Create the experiment for configuration c with the given seed (i.e.
+	 * repetition), writing the configuration's .properties file first if
+	 * necessary.
+	 */
+	public synchronized Experiment createExperiment(int c, int seed) {
+		Properties props = getConfiguration(c);
+		String filename = outputDir + File.separatorChar + props.getProperty("code") + ".properties";
+		if (!written[c]) {
+			try {
+				FileOutputStream out = new FileOutputStream(filename);
+				props.store(out, null);
+				out.close();
+			} catch (Exception e) {
+				System.err.println("Sweep: Problem storing " + filename);
+				System.exit(-1);
+			}
+			written[c] = true;
+		}
+		return new Experiment(seed, outputDir, filename);
+	}
+}
@@ -1,28 +1,35 @@
 package localmap;
 
-import java.util.Set;
+import java.util.ArrayList;
 
-import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Vec2;
-import org.jgraph.graph.DefaultEdge;
-import org.jgrapht.UndirectedGraph;
-import org.jgrapht.graph.SimpleGraph;
-import org.jgrapht.graph.UndirectedSubgraph;
 
 public class Cluster {
 	public Vec2 centroid;
 	public int size;
 	public int puckType;
-	public UndirectedSubgraph<Vec2, DefaultEdge> subgraph;
 
-	public Cluster(Vec2 centroid, int size, int k, 
-				   UndirectedSubgraph<Vec2, DefaultEdge> subgraph) {
+	// The pucks of this cluster (in the order given to extractClusters) and
+	// the number of other pucks in the cluster within CLUSTER_DISTANCE_THRESHOLD
+	// of each.
+	public Vec2[] pucks;
+	public int[] degrees;
+
+	// The grid this cluster was extracted from and its index there.
+	ClusterGrid grid;
+	int index;
+
+	Cluster(Vec2 centroid, int k, Vec2[] pucks, int[] degrees,
+			ClusterGrid grid, int index) {
 		this.centroid = centroid;
-		this.size = size;
+		this.size = pucks.length;
 		this.puckType = k;
-		this.subgraph = subgraph;
+		this.pucks = pucks;
+		this.degrees = degrees;
+		this.grid = grid;
+		this.index = index;
 	}
-	
+
 	/**
 	 * Construct a cluster that consists only of a single puck.
 	 */
@@ -30,29 +37,33 @@ public class Cluster {
 		this.centroid = centroid;
 		this.size = 1;
 		this.puckType = k;
-		
-		UndirectedGraph<Vec2, DefaultEdge> g =
-	            new SimpleGraph<Vec2, DefaultEdge>(DefaultEdge.class);
-		g.addVertex(centroid);
+		pucks = new Vec2[] { centroid };
+		degrees = new int[1];
 
-		this.subgraph =
-				new UndirectedSubgraph<Vec2, DefaultEdge>(g, null, null);
+		ArrayList<Vec2> list = new ArrayList<Vec2>();
+		list.add(centroid);
+		grid = new ClusterGrid(list);
 	}
-	
+
 	/**
 	 * Return true if this cluster is a neighbour to the given cluster.  A pair of clusters are
 	 * neighbours if any member of one lies within the threshold distance of another.  In
 	 * general this will not be the case for clusters of the same type (because they would
-	 * have been extracted as a single cluster).  However, clusters of different types may 
+	 * have been extracted as a single cluster).  However, clusters of different types may
 	 * be neighbours.
 	 */
 	public boolean isNeighbourTo(Cluster other) {
-		Set<Vec2> thisSet = subgraph.vertexSet();
-		Set<Vec2> otherSet = other.subgraph.vertexSet();
-		for (Vec2 thisPuck : thisSet)
-			for (Vec2 otherPuck : otherSet)
-				if (MathUtils.distance(thisPuck, otherPuck) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
-					return true;
+		for (Vec2 thisPuck : pucks)
+			if (other.contains(thisPuck))
+				return true;
 		return false;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Return true if any puck of this cluster lies within the threshold distance
+	 * of the given position.
+	 */
+	public boolean contains(Vec2 v) {
+		return grid.hasNeighbour(v, index);
+	}
+}
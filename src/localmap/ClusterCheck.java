@@ -0,0 +1,245 @@
+package localmap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.Vec2;
+import org.jgraph.graph.DefaultEdge;
+import org.jgrapht.UndirectedGraph;
+import org.jgrapht.alg.ConnectivityInspector;
+import org.jgrapht.graph.SimpleGraph;
+import org.jgrapht.graph.UndirectedSubgraph;
+
+import sensors.SensedType;
+import utils.FileUtils;
+import arena.PositionList;
+import arena.TrajectoryReader;
+import arena.TrajectoryWriter;
+
+/**
+ * Checks that LocalMap.extractClusters gives exactly the same clusters as the
+ * JGraphT-based implementation it replaced: the same clusters in the same
+ * order, with the same pucks, degrees and (bit-identical) centroids.  The
+ * neighbour queries of Cluster are also checked against brute force.  If an
+ * output directory is given, every stored frame of puck positions found under
+ * it is checked.  Otherwise random arenas of up to 1000 pucks are checked and
+ * the time taken by both implementations is reported.  Usage:
+ *
+ *     ClusterCheck [OUTPUT_DIR]
+ */
+public class ClusterCheck {
+
+	static final int[] PUCK_COUNTS = { 10, 100, 1000 };
+
+	private static final char SLASH = File.separatorChar;
+
+	static long nFrames, nMismatches;
+
+	public static void main(String[] args) {
+		if (args.length == 1)
+			checkRecorded(args[0]);
+		else
+			checkRandom();
+
+		System.out.println("frames compared: " + nFrames + ", mismatches: " + nMismatches);
+		if (nMismatches > 0)
+			System.exit(-1);
+	}
+
+	private static void checkRecorded(String outputDir) {
+		File[] codeDirs = new File(outputDir).listFiles();
+		if (codeDirs == null) {
+			System.err.println("ClusterCheck: directory " + outputDir + " does not exist!");
+			System.exit(-1);
+		}
+		for (File codeDir : codeDirs) {
+			if (!codeDir.isDirectory())
+				continue;
+			for (File indexDir : codeDir.listFiles()) {
+				if (!indexDir.isDirectory())
+					continue;
+				String dirName = indexDir.getPath();
+				if (new File(dirName + SLASH + TrajectoryWriter.FILENAME).exists()) {
+					TrajectoryReader reader = new TrajectoryReader(dirName + SLASH + TrajectoryWriter.FILENAME);
+					for (int r=0; r<reader.getRecordCount(); r++) {
+						ArrayList<ArrayList<Vec2>> frame = new ArrayList<ArrayList<Vec2>>();
+						for (int k=0; k<SensedType.NPUCK_COLOURS; k++)
+							frame.add(toList(PositionList.read(reader, r, k)));
+						check(dirName + " record " + r, frame);
+					}
+				} else {
+					ArrayList<String> txtFiles = FileUtils.getMatchedFilenames("step\\d*_" + SensedType.getPuckColorName(0) + "_pucks.txt", dirName);
+					Collections.sort(txtFiles);
+					for (String txtFile : txtFiles) {
+						String base = txtFile.substring(0, txtFile.indexOf('_'));
+						ArrayList<ArrayList<Vec2>> frame = new ArrayList<ArrayList<Vec2>>();
+						for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+							PositionList list = PositionList.load(dirName + SLASH + base + "_" + SensedType.getPuckColorName(k) + "_pucks.txt");
+							frame.add(list == null ? new ArrayList<Vec2>() : toList(list));
+						}
+						check(dirName + SLASH + base, frame);
+					}
+				}
+			}
+		}
+	}
+
+	private static ArrayList<Vec2> toList(PositionList list) {
+		ArrayList<Vec2> vs = new ArrayList<Vec2>();
+		for (int i=0; i<list.size(); i++)
+			vs.add(list.get(i));
+		return vs;
+	}
+
+	private static void checkRandom() {
+		Random random = new Random(0);
+		System.out.println("nPucks\treference (ms)\tgrid (ms)");
+		for (int nPucks : PUCK_COUNTS) {
+			long referenceTime = 0, gridTime = 0;
+			for (int t=0; t<20; t++) {
+				// Pucks gathered into a varying number of loose clusters, with
+				// some exact duplicates.
+				float w = 10 * (float) Math.sqrt(nPucks);
+				int nCentres = 1 + random.nextInt(nPucks / 5 + 1);
+				ArrayList<ArrayList<Vec2>> frame = new ArrayList<ArrayList<Vec2>>();
+				for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+					ArrayList<Vec2> pucks = new ArrayList<Vec2>();
+					for (int i=0; i<nPucks / SensedType.NPUCK_COLOURS; i++) {
+						if (i > 0 && random.nextInt(50) == 0) {
+							pucks.add(new Vec2(pucks.get(random.nextInt(i))));
+							continue;
+						}
+						Random centres = new Random(random.nextInt(nCentres));
+						float cx = (centres.nextFloat() - 0.5f) * w;
+						float cy = (centres.nextFloat() - 0.5f) * w;
+						pucks.add(new Vec2(cx + (float) random.nextGaussian() * 2,
+										   cy + (float) random.nextGaussian() * 2));
+					}
+					frame.add(pucks);
+				}
+				check("nPucks " + nPucks + " trial " + t, frame);
+
+				long start = System.nanoTime();
+				for (ArrayList<Vec2> pucks : frame)
+					referenceClusters(pucks);
+				referenceTime += System.nanoTime() - start;
+				start = System.nanoTime();
+				for (int k=0; k<frame.size(); k++)
+					LocalMap.extractClusters(frame.get(k), k, new ArrayList<Cluster>());
+				gridTime += System.nanoTime() - start;
+			}
+			System.out.println(nPucks + "\t" + referenceTime / 20e6 + "\t" + gridTime / 20e6);
+		}
+	}
+
+	/**
+	 * Compare both implementations on one frame, which holds the positions of
+	 * the pucks of each colour.
+	 */
+	private static void check(String name, ArrayList<ArrayList<Vec2>> frame) {
+		nFrames++;
+		ArrayList<Cluster> all = new ArrayList<Cluster>();
+		ArrayList<List<Vec2>> allMembers = new ArrayList<List<Vec2>>();
+		for (int k=0; k<frame.size(); k++) {
+			ArrayList<Vec2> pucks = frame.get(k);
+			ArrayList<Cluster> clusters = new ArrayList<Cluster>();
+			LocalMap.extractClusters(pucks, k, clusters);
+			ArrayList<UndirectedSubgraph<Vec2, DefaultEdge>> subgraphs = new ArrayList<UndirectedSubgraph<Vec2, DefaultEdge>>();
+			ArrayList<Vec2> centroids = referenceClusters(pucks, subgraphs);
+
+			if (clusters.size() != centroids.size()) {
+				mismatch(name, "colour " + k + ": " + clusters.size() + " clusters, expected " + centroids.size());
+				continue;
+			}
+			for (int c=0; c<clusters.size(); c++) {
+				Cluster cluster = clusters.get(c);
+				UndirectedSubgraph<Vec2, DefaultEdge> subgraph = subgraphs.get(c);
+				ArrayList<Vec2> members = new ArrayList<Vec2>(subgraph.vertexSet());
+				boolean same = cluster.size == members.size() && cluster.puckType == k &&
+						Float.floatToIntBits(cluster.centroid.x) == Float.floatToIntBits(centroids.get(c).x) &&
+						Float.floatToIntBits(cluster.centroid.y) == Float.floatToIntBits(centroids.get(c).y);
+				for (int i=0; same && i<members.size(); i++)
+					same = cluster.pucks[i] == members.get(i) &&
+						   cluster.degrees[i] == subgraph.degreeOf(members.get(i));
+				if (!same)
+					mismatch(name, "colour " + k + ", cluster " + c + ": centroid " + cluster.centroid + ", size " + cluster.size +
+							", expected centroid " + centroids.get(c) + ", size " + members.size());
+				all.add(cluster);
+				allMembers.add(members);
+			}
+		}
+
+		// Neighbour queries between all pairs of clusters and for each puck.
+		for (int a=0; a<all.size(); a++) {
+			for (int b=0; b<all.size(); b++) {
+				boolean expected = false;
+				for (Vec2 u : allMembers.get(a))
+					for (Vec2 v : allMembers.get(b))
+						if (MathUtils.distance(u, v) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
+							expected = true;
+				if (all.get(a).isNeighbourTo(all.get(b)) != expected)
+					mismatch(name, "isNeighbourTo(" + a + ", " + b + ") should be " + expected);
+			}
+			for (ArrayList<Vec2> pucks : frame)
+				for (Vec2 v : pucks) {
+					boolean expected = false;
+					for (Vec2 u : allMembers.get(a))
+						if (MathUtils.distance(v, u) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
+							expected = true;
+					if (all.get(a).contains(v) != expected)
+						mismatch(name, "contains(" + v + ") for cluster " + a + " should be " + expected);
+				}
+		}
+	}
+
+	private static void mismatch(String name, String message) {
+		nMismatches++;
+		System.err.println(name + ": " + message);
+	}
+
+	private static ArrayList<Vec2> referenceClusters(ArrayList<Vec2> pucks) {
+		return referenceClusters(pucks, new ArrayList<UndirectedSubgraph<Vec2, DefaultEdge>>());
+	}
+
+	/**
+	 * The former implementation of LocalMap.extractClusters.  Returns the
+	 * centroids and fills 'subgraphs' with the subgraph of each cluster.
+	 */
+	private static ArrayList<Vec2> referenceClusters(ArrayList<Vec2> pucks,
+			ArrayList<UndirectedSubgraph<Vec2, DefaultEdge>> subgraphs) {
+		UndirectedGraph<Vec2, DefaultEdge> g =
+	            new SimpleGraph<Vec2, DefaultEdge>(DefaultEdge.class);
+		for (Vec2 v : pucks)
+			g.addVertex(v);
+		Set<Vec2> vertexSet = g.vertexSet();
+		for (Vec2 vi : vertexSet) {
+			for (Vec2 vj : vertexSet) {
+				if (!vi.equals(vj)) {
+					if (MathUtils.distance(vi, vj) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
+						g.addEdge(vi, vj);
+				}
+			}
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		ConnectivityInspector inspector = new ConnectivityInspector(g);
+		@SuppressWarnings("unchecked")
+		List<Set<Vec2>> sets = inspector.connectedSets();
+
+		ArrayList<Vec2> centroids = new ArrayList<Vec2>();
+		for (Set<Vec2> set : sets) {
+			Vec2 centroid = new Vec2();
+			for (Vec2 v : set)
+				centroid.addLocal(v);
+			centroid.mulLocal(1f / set.size());
+			centroids.add(centroid);
+			subgraphs.add(new UndirectedSubgraph<Vec2, DefaultEdge>(g, set, null));
+		}
+		return centroids;
+	}
+}
@@ -0,0 +1,121 @@
+package localmap;
+
+import java.util.ArrayList;
+
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.Vec2;
+
+/**
+ * A set of distinct puck positions indexed by a uniform grid.  The cells are
+ * (just over) CLUSTER_DISTANCE_THRESHOLD wide, so all positions within the
+ * threshold distance of a point lie in the 3x3 block of cells around it.  The
+ * cells are kept in a hash table so the positions need not be bounded.  Each
+ * position is also labelled with the index of the cluster it belongs to (as
+ * assigned by LocalMap.extractClusters).
+ */
+public class ClusterGrid {
+
+	// Slightly larger than the threshold so that rounding cannot place two
+	// positions within the threshold distance two cells apart.
+	static final float CELL_SIZE = LocalMap.CLUSTER_DISTANCE_THRESHOLD * 1.001f;
+	private static final float INV_CELL_SIZE = 1 / CELL_SIZE;
+
+	private Vec2[] points;
+	private int n;
+	private int[] cellX, cellY;
+
+	// Hash table of cells: 'head' gives the first position in each bucket and
+	// 'next' chains the positions sharing a bucket.
+	private int[] head, next;
+	private int mask;
+
+	// The cluster index of each position.
+	int[] cluster;
+
+	/**
+	 * Create a grid holding the given positions.  Equal positions are stored
+	 * only once, so the index of a position is its index amongst the distinct
+	 * positions in 'positions'.
+	 */
+	public ClusterGrid(ArrayList<Vec2> positions) {
+		int capacity = positions.size();
+		points = new Vec2[capacity];
+		cellX = new int[capacity];
+		cellY = new int[capacity];
+		next = new int[capacity];
+		cluster = new int[capacity];
+
+		int tableSize = 16;
+		while (tableSize < 2 * capacity)
+			tableSize *= 2;
+		head = new int[tableSize];
+		mask = tableSize - 1;
+		for (int b = 0; b < tableSize; b++)
+			head[b] = -1;
+
+		for (Vec2 v : positions)
+			add(v);
+	}
+
+	private void add(Vec2 v) {
+		int cx = (int) Math.floor(v.x * INV_CELL_SIZE);
+		int cy = (int) Math.floor(v.y * INV_CELL_SIZE);
+		int b = bucket(cx, cy);
+		for (int j = head[b]; j != -1; j = next[j])
+			if (points[j].equals(v))
+				return;
+
+		points[n] = v;
+		cellX[n] = cx;
+		cellY[n] = cy;
+		next[n] = head[b];
+		head[b] = n;
+		n++;
+	}
+
+	private int bucket(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & mask;
+	}
+
+	public int size() {
+		return n;
+	}
+
+	public Vec2 get(int i) {
+		return points[i];
+	}
+
+	/**
+	 * Place into 'out' the indices of all positions lying within
+	 * CLUSTER_DISTANCE_THRESHOLD of 'v' (including 'v' itself, if present).
+	 * 'out' must have room for size() entries.  Returns the number found.
+	 */
+	public int getNeighbours(Vec2 v, int[] out) {
+		int count = 0;
+		int cx = (int) Math.floor(v.x * INV_CELL_SIZE);
+		int cy = (int) Math.floor(v.y * INV_CELL_SIZE);
+		for (int x = cx - 1; x <= cx + 1; x++)
+			for (int y = cy - 1; y <= cy + 1; y++)
+				for (int j = head[bucket(x, y)]; j != -1; j = next[j])
+					if (cellX[j] == x && cellY[j] == y &&
+						MathUtils.distance(v, points[j]) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
+						out[count++] = j;
+		return count;
+	}
+
+	/**
+	 * Return true if any position of the given cluster lies within
+	 * CLUSTER_DISTANCE_THRESHOLD of 'v'.
+	 */
+	public boolean hasNeighbour(Vec2 v, int clusterIndex) {
+		int cx = (int) Math.floor(v.x * INV_CELL_SIZE);
+		int cy = (int) Math.floor(v.y * INV_CELL_SIZE);
+		for (int x = cx - 1; x <= cx + 1; x++)
+			for (int y = cy - 1; y <= cy + 1; y++)
+				for (int j = head[bucket(x, y)]; j != -1; j = next[j])
+					if (cluster[j] == clusterIndex && cellX[j] == x && cellY[j] == y &&
+						MathUtils.distance(v, points[j]) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
+						return true;
+		return false;
+	}
+}
@@ -3,19 +3,15 @@ package localmap;
 import java.awt.Color;
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 
 
 import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Vec2;
-import org.jgraph.graph.DefaultEdge;
-import org.jgrapht.UndirectedGraph;
-import org.jgrapht.alg.ConnectivityInspector;
-import org.jgrapht.graph.SimpleGraph;
-import org.jgrapht.graph.UndirectedSubgraph;
 
 import experiment.ExperimentManager;
 import experiment.PropertiesListener;
@@ -23,6 +19,7 @@ import experiment.PropertiesListener;
 import sensors.Blob;
 import sensors.BlobFinder;
 import sensors.Calibration;
+import sensors.PuckPalette;
 import sensors.StringOverlay;
 import sensors.Calibration.CalibDataPerPixel;
 import sensors.STCameraImage;
@@ -38,6 +35,10 @@ import arena.Puck;
 public class LocalMap implements PropertiesListener {
 
 	Calibration calib;
+
+	// The puck colours to look for.  Only the first palette.size() entries
+	// of 'pucks' are used.
+	PuckPalette palette;
 	
 	// We use an STImage as the occupancy grid to represent.
 	STImage occupancy;
@@ -59,22 +60,42 @@ public class LocalMap implements PropertiesListener {
 	ArrayList<Cluster> clusters = new ArrayList<Cluster>(),
 											rawClusters = new ArrayList<Cluster>();
 	
+	// Labels the puck blobs of each image.  Kept so that its buffers are
+	// reused from one image to the next.
+	private BlobFinder blobFinder;
+	
 	private int width;
 	private int height;
 	
+	// The mapping from the camera's pixels to the cells of 'occupancy'.
+	private Projection projection;
+
+	// The distance from each cell of 'occupancy' to the nearest ROBOT cell.
+	// Computed on demand once 'occupancy' has been filled.
+	private RobotDistanceField robotField;
+	private boolean robotFieldValid;
+
+	// Counts of the cells of 'occupancy' in rectangular regions.
+	private OccupancyCounts counts;
+	
 	float minXr, maxXr, minYr, maxYr;
 
 	// Resolution of the occupancy grid.  This specifies the square size of
 	// each grid cell in ground-plane coordinates.
-	public static float CELL_SIZE = 1;
+	public static final float CELL_SIZE = 1;
 	
 	// Threshold distance between pucks for them to be considered part of the
 	// same cluster.
 //	public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f * Puck.WIDTH;
-public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
+	public static final float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	
 	public static final float ROBOT_THRESHOLD_DISTANCE_SQD = (float) Math.pow(10, 2);
 
+	// The stages of 'update' and the time (in nanoseconds) spent in each by
+	// the last call.
+	public static final String[] STAGE_NAMES = { "occupancy", "pucks", "clusters", "filter" };
+	long[] stageTimes = new long[STAGE_NAMES.length];
+
 	// Parameters whose values are loaded from the current Experiment...
 	
 	// Thresholds applied to the area of a blob in the gripper hole to determine 
@@ -87,31 +108,21 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	 * calibration parameters.
 	 * @param calib 
 	 */
-	public LocalMap(Calibration calib) {
+	public LocalMap(Calibration calib, PuckPalette palette) {
 		this.calib = calib;
-		minXr = Float.POSITIVE_INFINITY;
-		maxXr = Float.NEGATIVE_INFINITY;
-		minYr = Float.POSITIVE_INFINITY;
-		maxYr = Float.NEGATIVE_INFINITY;
-		for (int i=0; i<calib.getImageWidth(); i++)
-			for (int j=0; j<calib.getImageHeight(); j++) {
-				CalibDataPerPixel pixelCalib = calib.getCalibData(i, j);
-				if (pixelCalib != null) { 
-					if (pixelCalib.Xr*pixelCalib.Xr + pixelCalib.Yr*pixelCalib.Yr > calib.getMaxSensedDistanceSqd())
-						continue;
-
-					minXr = Math.min(minXr, pixelCalib.Xr);
-					maxXr = Math.max(maxXr, pixelCalib.Xr);
-					minYr = Math.min(minYr, pixelCalib.Yr);
-					maxYr = Math.max(maxYr, pixelCalib.Yr);
-				}
-			}
-		
-		// Note that for height we utilize not the minimum Xr, but 0.
-		width = (int) (0.5 + (maxYr - minYr) / CELL_SIZE) + 1;
-		height = (int) (0.5 + (maxXr) / CELL_SIZE) + 1;
+		this.palette = palette;
+		projection = Projection.get(calib);
+		minXr = projection.minXr;
+		maxXr = projection.maxXr;
+		minYr = projection.minYr;
+		maxYr = projection.maxYr;
+		width = projection.width;
+		height = projection.height;
 		
 		occupancy = new STImage(width, height);
+		robotField = new RobotDistanceField(width, height);
+		counts = new OccupancyCounts(width, height);
+		counts.setGrid(occupancy.data);
 		
 		pucks = (ArrayList<Vec2>[])new ArrayList[SensedType.NPUCK_COLOURS];
 		for (int k=0; k<SensedType.NPUCK_COLOURS; k++)
@@ -126,7 +137,7 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	 * @param other
 	 */
 	public LocalMap(LocalMap other) {
-		this(other.calib);
+		this(other.calib, other.palette);
 		copyFrom(other);
 	}
 
@@ -140,10 +151,10 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		//Cluster carriedCluster;			
 		//ArrayList<Cluster> clusters;
 		
-		for (int i=0; i<width; i++)
-			for (int j=0; j<height; j++)
-				occupancy.pixels[i][j] = other.occupancy.pixels[i][j];
+		occupancy.copyFrom(other.occupancy);
+		occupancyChanged();
 		
+		palette = other.palette;
 		for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
 			pucks[k].clear();
 			pucks[k].addAll(other.pucks[k]);
@@ -158,6 +169,31 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		clusters.addAll(other.clusters);
 	}
 	
+	public long[] getStageTimes() {
+		return stageTimes;
+	}
+
+	/**
+	 * Forget everything sensed so far, leaving this map as if newly created
+	 * (but keeping its buffers) for an arena with the given palette.  Used
+	 * when a robot's sensors are recycled for a new arena.
+	 */
+	public void reset(PuckPalette palette) {
+		this.palette = palette;
+		occupancy.setAll(SensedType.NOTHING);
+		occupancy.clearOverlays();
+		occupancyChanged();
+		for (int k=0; k<SensedType.NPUCK_COLOURS; k++)
+			pucks[k].clear();
+		carrying = false;
+		carriedV = null;
+		carriedType = SensedType.NOTHING;
+		carriedCluster = null;
+		clusters.clear();
+		rawClusters.clear();
+		propertiesUpdated();
+	}
+	
 	@Override
 	public void propertiesUpdated() {
 		CARRY_THRESHOLD_LO = ExperimentManager.getCurrent().getProperty("LocalMap.CARRY_THRESHOLD_LO", 0.1f, this);
@@ -181,19 +217,27 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	*/
 	
 	public void update(STCameraImage image) {
+		// Overlays describe the previous map only.  Nothing removes them
+		// unless the map is displayed, so without this they would accumulate
+		// for as long as the robot runs.
+		occupancy.clearOverlays();
+
 		// Fill occupancy grid and extract pucks and clusters.
+		long start = System.nanoTime();
 		extractOccupancy(image);
+		long occupancyDone = System.nanoTime();
 		extractPucks(image);
+		long pucksDone = System.nanoTime();
 		clusters.clear();
-		for (int k=0; k<SensedType.NPUCK_COLOURS; k++)
+		for (int k=0; k<palette.size(); k++)
 			extractClusters(pucks[k], k, clusters);
+		long clustersDone = System.nanoTime();
 		
 		// Determine the cluster that the carried puck belongs to
 		carriedCluster = null;
 		if (carrying) {
 			for (Cluster cluster : clusters) {
-				Set<Vec2> set = cluster.subgraph.vertexSet();
-				for (Vec2 v : set)
+				for (Vec2 v : cluster.pucks)
 					if (carriedV.equals(v))
 						carriedCluster = cluster;
 			}
@@ -203,6 +247,11 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		rawClusters.addAll(clusters);
 
 		filterClusters();
+
+		stageTimes[0] = occupancyDone - start;
+		stageTimes[1] = pucksDone - occupancyDone;
+		stageTimes[2] = clustersDone - pucksDone;
+		stageTimes[3] = System.nanoTime() - clustersDone;
 		
 		occupancy.addOverlay(new StringOverlay(width/4, height - 10, "LocalMap: Carrying: " + carriedType, Color.BLACK));
 	}
@@ -210,22 +259,36 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	private void extractOccupancy(STCameraImage image) {
 		occupancy.setAll(SensedType.NOTHING);
 		
+		// Several pixels may project onto the same cell, in which case the
+		// last one visited wins, so the pixels are visited column by column as
+		// the projection was computed.
+		byte[] imageData = image.data;
+		byte[] occupancyData = occupancy.data;
+		int[] pixelToCell = projection.pixelToCell;
+		byte hidden = STImage.code(SensedType.HIDDEN);
 		for (int i=0; i<image.width; i++)
-			for (int j=0; j<image.height; j++) {
-				CalibDataPerPixel pixelCalib = calib.getCalibData(i, j);
-				if (pixelCalib != null && !pixelCalib.gripperHole) { 
-					if (pixelCalib.Xr*pixelCalib.Xr + pixelCalib.Yr*pixelCalib.Yr > calib.getMaxSensedDistanceSqd())
-						continue;
+			for (int p=i; p<imageData.length; p+=image.width) {
+				int cell = pixelToCell[p];
+				if (cell == -1)
+					continue;
 
-					SensedType type = image.pixels[i][j];
-					if (type == SensedType.HIDDEN)
-						// We don't see HIDDEN things (D-uh!)
-						continue;
+				byte code = imageData[p];
+				if (code == hidden)
+					// We don't see HIDDEN things (D-uh!)
+					continue;
 
-					Point p = getGridPoint(pixelCalib.Xr, pixelCalib.Yr);
-					occupancy.pixels[p.x][p.y] = type;
-				}				
+				occupancyData[cell] = code;
 		}
+		occupancyChanged();
+	}
+
+	/**
+	 * Discard everything derived from the contents of 'occupancy'.  Must be
+	 * called whenever they change.
+	 */
+	private void occupancyChanged() {
+		robotFieldValid = false;
+		counts.setGrid(occupancy.data);
 	}
 
 	/**
@@ -239,12 +302,15 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		carrying = false;
 		carriedType = SensedType.NOTHING;
 		
-		for (int k=0; k<SensedType.NPUCK_COLOURS; k++) {
+		// Blobs of all of the palette's colours are found in a single pass.
+		if (blobFinder == null)
+			blobFinder = new BlobFinder(image.width, image.height);
+		blobFinder.findBlobs(image, palette.getTypes(), 0, image.width-1, 0, image.height-1);
+		
+		for (int k=0; k<palette.size(); k++) {
 			pucks[k].clear();
 			
-			SensedType puckType = SensedType.getPuckType(k);
-			BlobFinder finder = new BlobFinder(image, puckType, 0, image.width-1, 0, image.height-1);
-			ArrayList<Blob> blobs = finder.getBlobs();
+			ArrayList<Blob> blobs = blobFinder.getBlobs(k);
 			
 			// Filter distant blobs and those outside the calibrated area.
 			Iterator<Blob> it = blobs.iterator();
@@ -301,7 +367,7 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 				if ( (lastCarrying && holeFraction > CARRY_THRESHOLD_LO) ||
 					(!carrying && holeFraction > CARRY_THRESHOLD_HI)) {
 					carrying = true;
-					carriedType = SensedType.getPuckType(k);				
+					carriedType = palette.getType(k);				
 					carriedV = new Vec2(holeCalib.Xr, holeCalib.Yr);
 				}
 			}
@@ -322,51 +388,119 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	 * pucks.  The nodes of this graph are the pucks represented in 'pucks' 
 	 * with an edge defined between any pair that lie within 
 	 * CLUSTER_DISTANCE_THRESHOLD of each other.  The type of puck is given by k.
+	 * 
+	 * The pucks are placed in a ClusterGrid so that only nearby pairs are
+	 * tested, and the components are found by union-find.  Clusters are added
+	 * in order of their first puck in 'pucks'.
 	 */
 	public static void extractClusters(ArrayList<Vec2> pucks, int k,
 									   					  ArrayList<Cluster> clusters) {
-		UndirectedGraph<Vec2, DefaultEdge> g =
-	            new SimpleGraph<Vec2, DefaultEdge>(DefaultEdge.class);
-		
-		// Create nodes which represent the position pairs in 'pucks[k]'.
-		for (Vec2 v : pucks)
-			g.addVertex(v);
-						
-		// Add edges by considering all possible pairs of vertices and creating
-		// an edge when the two positions lie within CLUSTER_DISTANCE_THRESHOLD
-		Set<Vec2> vertexSet = g.vertexSet();
-		for (Vec2 vi : vertexSet) {
-			for (Vec2 vj : vertexSet) {
-				if (!vi.equals(vj)) {
-					if (MathUtils.distance(vi, vj) < CLUSTER_DISTANCE_THRESHOLD)
-						g.addEdge(vi, vj);
+		ClusterGrid grid = new ClusterGrid(pucks);
+		int n = grid.size();
+		int[] parent = new int[n];
+		int[] degrees = new int[n];
+		int[] neighbours = new int[n];
+		for (int i=0; i<n; i++)
+			parent[i] = i;
+
+		// Join each puck to its neighbours.  The root of each set is its
+		// lowest index.
+		for (int i=0; i<n; i++) {
+			int count = grid.getNeighbours(grid.get(i), neighbours);
+			for (int c=0; c<count; c++) {
+				int j = neighbours[c];
+				if (j == i)
+					continue;
+				degrees[i]++;
+				if (j > i) {
+					int ri = find(parent, i), rj = find(parent, j);
+					if (ri < rj)
+						parent[rj] = ri;
+					else
+						parent[ri] = rj;
 				}
 			}
 		}
 
-		// Now extract the connected components.
-		@SuppressWarnings({ "rawtypes", "unchecked" })
-		ConnectivityInspector inspector = new ConnectivityInspector(g);
-		@SuppressWarnings("unchecked")
-		List<Set<Vec2>> sets = inspector.connectedSets();
-		
-		// For each connected component, determine the centroid and add the
-		// cluster to 'clusters'.
-		for (Set<Vec2> set : sets) {
-			int size = set.size();
-			
-			// Compute the centroid.
+		// Number the clusters and count their sizes.
+		int nClusters = 0;
+		int[] sizes = new int[n];
+		int[] firsts = new int[n];
+		for (int i=0; i<n; i++) {
+			int r = find(parent, i);
+			if (r == i) {
+				firsts[nClusters] = i;
+				grid.cluster[i] = nClusters++;
+			} else
+				grid.cluster[i] = grid.cluster[r];
+			sizes[grid.cluster[i]]++;
+		}
+
+		Vec2[][] members = new Vec2[nClusters][];
+		int[][] memberDegrees = new int[nClusters][];
+		int[] filled = new int[nClusters];
+		for (int c=0; c<nClusters; c++) {
+			members[c] = new Vec2[sizes[c]];
+			memberDegrees[c] = new int[sizes[c]];
+		}
+		for (int i=0; i<n; i++) {
+			int c = grid.cluster[i];
+			members[c][filled[c]] = grid.get(i);
+			memberDegrees[c][filled[c]++] = degrees[i];
+		}
+
+		int[] queue = null;
+		for (int c=0; c<nClusters; c++) {
 			Vec2 centroid = new Vec2();
-			for (Vec2 v : set)
-				centroid.addLocal(v);
-			centroid.mulLocal(1f / size);
-			
-			UndirectedSubgraph<Vec2, DefaultEdge> subgraph =
-					new UndirectedSubgraph<Vec2, DefaultEdge>(g, set, null);
-					
-			Cluster cluster = new Cluster(centroid, size, k, subgraph);
-			clusters.add(cluster);
+			if (sizes[c] <= 2) {
+				// Addition is commutative so the order doesn't matter.
+				for (Vec2 v : members[c])
+					centroid.addLocal(v);
+			} else {
+				if (queue == null)
+					queue = new int[n];
+				for (Vec2 v : getCentroidOrder(grid, firsts[c], queue, neighbours))
+					centroid.addLocal(v);
+			}
+			centroid.mulLocal(1f / sizes[c]);
+
+			clusters.add(new Cluster(centroid, k, members[c], memberDegrees[c], grid, c));
+		}
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the pucks of the cluster containing puck 'start' in the order in
+	 * which they are summed to obtain the centroid.  To keep the centroids
+	 * identical to those computed when clusters were found with JGraphT, this
+	 * is the iteration order of a HashSet filled by a breadth-first search
+	 * which starts at the cluster's first puck and visits neighbours in index
+	 * order (as done by JGraphT's ConnectivityInspector).
+	 */
+	private static Set<Vec2> getCentroidOrder(ClusterGrid grid, int start,
+			int[] queue, int[] neighbours) {
+		Set<Vec2> set = new HashSet<Vec2>();
+		int head = 0, tail = 0;
+		queue[tail++] = start;
+		set.add(grid.get(start));
+		while (head < tail) {
+			int i = queue[head++];
+			int count = grid.getNeighbours(grid.get(i), neighbours);
+			Arrays.sort(neighbours, 0, count);
+			for (int c=0; c<count; c++) {
+				Vec2 v = grid.get(neighbours[c]);
+				if (set.add(v))
+					queue[tail++] = neighbours[c];
+			}
 		}
+		return set;
 	}
 	
 	/**
@@ -381,24 +515,26 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 				it.remove();
 		}
 				
-		// Filter out clusters which are in proximity to other robots.
-		for (int i=0; i<occupancy.width; i++)
-			for (int j=0; j<occupancy.height; j++) {
-				if (occupancy.pixels[i][j] == SensedType.ROBOT) {
-					Vec2 robotV = getGroundPlane(i, j);
-					it = clusters.listIterator();
-					while (it.hasNext()) {
-						Cluster cluster = it.next();
-						Set<Vec2> set = cluster.subgraph.vertexSet();
-						for (Vec2 puckV : set) {
-							if (MathUtils.distanceSquared(robotV, puckV) < ROBOT_THRESHOLD_DISTANCE_SQD) {
-								it.remove();
-								break;
-							}
-						}
+		// Filter out clusters which are in proximity to other robots.  With
+		// few ROBOT cells and pucks it is cheaper to compare each pair than to
+		// compute the distance field.
+		RobotDistanceField field = getRobotField();
+		if (!field.isEmpty()) {
+			int nPucks = 0;
+			for (Cluster cluster : clusters)
+				nPucks += cluster.size;
+			boolean useField = field.nCells * nPucks > width * height;
+			it = clusters.listIterator();
+			while (it.hasNext()) {
+				Cluster cluster = it.next();
+				for (Vec2 puckV : cluster.pucks) {
+					if (useField ? isNearRobot(puckV) : isNearRobotCell(field, puckV)) {
+						it.remove();
+						break;
 					}
 				}
 			}
+		}
 		
 		// Filter out other infeasible clusters.  A cluster may be infeasible
 		// for any of the following reasons:
@@ -450,7 +586,8 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	 * Converts grid coordinates (i, j) to ground-plane coordinates (Xr, Yr).
 	 */
 	public Vec2 getGroundPlane(int i, int j) {
-		return new Vec2(CELL_SIZE * j, maxYr - CELL_SIZE * i);
+		int c = occupancy.index(i, j);
+		return new Vec2(projection.cellX[c], projection.cellY[c]);
 	}
 
 	public STImage getOccupancy() {
@@ -488,9 +625,7 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		int closestType = -1;
 		float smallestDistSqd = Float.POSITIVE_INFINITY;
 		for (Cluster cluster : clusters) {
-			Set<Vec2> vertexSet = cluster.subgraph.vertexSet();
-			
-			for (Vec2 puckV : vertexSet) {
+			for (Vec2 puckV : cluster.pucks) {
 				float ds = MathUtils.distanceSquared(v, puckV);
 				if (ds < sqdDistanceThreshold && ds < smallestDistSqd) {
 					smallestDistSqd = ds;
@@ -533,12 +668,9 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	 * a cluster lies within the threshold distance to the given position.
 	 */
 	public Cluster getContainingCluster(Vec2 v) {
-		for (Cluster cluster : clusters) {
-			Set<Vec2> set = cluster.subgraph.vertexSet();
-			for (Vec2 cv : set)
-				if (MathUtils.distance(v, cv) < LocalMap.CLUSTER_DISTANCE_THRESHOLD)
-					return cluster;
-		}
+		for (Cluster cluster : clusters)
+			if (cluster.contains(v))
+				return cluster;
 		return null;
 	}
 
@@ -566,19 +698,9 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		int w = occupancy.width;
 		int w_2 = occupancy.width / 2;
 		int h = occupancy.height;
-		int leftSum = 0, rightSum = 0;
-		for (int i=0; i<w_2; i++)
-			for (int j=0; j<h; j++) {
-				SensedType type = occupancy.pixels[i][j];
-				if (type == SensedType.ROBOT || type == SensedType.WALL)
-					leftSum++;
-			}
-		for (int i=w_2; i<w; i++)
-			for (int j=0; j<h; j++) {
-				SensedType type = occupancy.pixels[i][j];
-				if (type == SensedType.ROBOT || type == SensedType.WALL)
-					rightSum++;
-			}
+		int mask = OccupancyCounts.mask(SensedType.ROBOT) | OccupancyCounts.mask(SensedType.WALL);
+		int leftSum = countCells(mask, 0, 0, w_2-1, h-1);
+		int rightSum = countCells(mask, w_2, 0, w-1, h-1);
 		
 		if (leftSum <= rightSum)
 			return 1;
@@ -586,6 +708,16 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 			return -1;
 	}
 
+	/**
+	 * Return the number of cells of the occupancy grid from (i0, j0) to
+	 * (i1, j1) inclusive which hold any of the types in 'mask' (see
+	 * OccupancyCounts.mask).  After the first query for a mask this takes
+	 * constant time until the grid next changes.
+	 */
+	public int countCells(int mask, int i0, int j0, int i1, int j1) {
+		return counts.count(mask, i0, j0, i1, j1);
+	}
+
 	public int getWidth() {
 		return width;
 	}
@@ -610,10 +742,13 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 	 * Remove entries of the given type from the occupancy grid.
 	 */
 	public void postFilterOccupancy(SensedType type) {
-		for (int i=0; i<width; i++)
-			for (int j=0; j<height; j++)
-				if (occupancy.pixels[i][j] == type)
-					occupancy.pixels[i][j] = SensedType.NOTHING;
+		byte[] data = occupancy.data;
+		byte code = STImage.code(type);
+		byte nothing = STImage.code(SensedType.NOTHING);
+		for (int p=0; p<data.length; p++)
+			if (data[p] == code)
+				data[p] = nothing;
+		occupancyChanged();
 	}
 
 	public ArrayList<Cluster> getClustersOfType(int k) {
@@ -624,6 +759,10 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		return rightClusters;
 	}
 	
+	public PuckPalette getPalette() {
+		return palette;
+	}
+
 	public ArrayList<Cluster> getUnfilteredClustersOfType(int k) {
 		ArrayList<Cluster> rightClusters = new ArrayList<Cluster>();
 		for (Cluster c : rawClusters)
@@ -632,23 +771,86 @@ public static float CLUSTER_DISTANCE_THRESHOLD = 1.5f;
 		return rightClusters;
 	}	
 	
+	private RobotDistanceField getRobotField() {
+		if (!robotFieldValid) {
+			robotField.compute(occupancy.data, STImage.code(SensedType.ROBOT));
+			robotFieldValid = true;
+		}
+		return robotField;
+	}
+
+	/**
+	 * Return true if the given ground-plane position lies within
+	 * ROBOT_THRESHOLD_DISTANCE_SQD of the centre of a ROBOT cell.  The
+	 * distance field decides this directly unless the position is within a
+	 * cell of the threshold, in which case only the ROBOT cells near the
+	 * position are checked.
+	 */
+	public boolean isNearRobot(Vec2 v) {
+		RobotDistanceField field = getRobotField();
+		if (field.isEmpty())
+			return false;
+
+		// The position is within half a cell (in each direction) of the
+		// centre of its own cell.
+		int i = (int)(0.5 + (maxYr - v.y) / CELL_SIZE);
+		int j = (int)(0.5 + (v.x) / CELL_SIZE);
+		float threshold = (float) Math.sqrt(ROBOT_THRESHOLD_DISTANCE_SQD);
+		if (i >= 0 && i < width && j >= 0 && j < height) {
+			float d = CELL_SIZE * (float) Math.sqrt(field.getDistanceSqd(j*width + i));
+			if (d + CELL_SIZE < threshold)
+				return true;
+			if (d - CELL_SIZE >= threshold)
+				return false;
+
+			int r = (int) Math.ceil(threshold / CELL_SIZE) + 1;
+			byte robot = STImage.code(SensedType.ROBOT);
+			for (int jj=Math.max(0, j-r); jj<=Math.min(height-1, j+r); jj++)
+				for (int ii=Math.max(0, i-r); ii<=Math.min(width-1, i+r); ii++) {
+					int c = jj*width + ii;
+					if (occupancy.data[c] == robot && isWithinRobotThreshold(c, v))
+						return true;
+				}
+			return false;
+		}
+
+		return isNearRobotCell(field, v);
+	}
+
+	/**
+	 * As 'isNearRobot' but by comparing the position with every ROBOT cell.
+	 */
+	private boolean isNearRobotCell(RobotDistanceField field, Vec2 v) {
+		for (int r=0; r<field.nCells; r++)
+			if (isWithinRobotThreshold(field.cells[r], v))
+				return true;
+		return false;
+	}
+
+	private boolean isWithinRobotThreshold(int c, Vec2 v) {
+		float dx = projection.cellX[c] - v.x, dy = projection.cellY[c] - v.y;
+		return dx*dx + dy*dy < ROBOT_THRESHOLD_DISTANCE_SQD;
+	}
+
 	/**
 	 * Get a vector to the closest robot---actually the closest ROBOT
 	 * cell in the occupancy grid.  Return null if there is no robot in sight.
 	 */
 	public Vec2 getClosestRobotVec2() {
+		RobotDistanceField field = getRobotField();
 		float closestDistance = Float.MAX_VALUE;
-		Vec2 closestRobot = null;
-		for (int i=0; i<occupancy.width; i++)
-			for (int j=0; j<occupancy.height; j++) {
-				if (occupancy.pixels[i][j] == SensedType.ROBOT) {
-					Vec2 vec = getGroundPlane(i, j);
-					if (vec.length() < closestDistance) {
-						closestDistance = vec.length();
-						closestRobot = vec;
-					}
-				}
+		int closestCell = -1;
+		for (int r=0; r<field.nCells; r++) {
+			int c = field.cells[r];
+			float x = projection.cellX[c], y = projection.cellY[c];
+			float distance = MathUtils.sqrt(x*x + y*y);
+			if (distance < closestDistance) {
+				closestDistance = distance;
+				closestCell = c;
 			}
-		return closestRobot;
+		}
+		if (closestCell == -1)
+			return null;
+		return new Vec2(projection.cellX[closestCell], projection.cellY[closestCell]);
 	}
 }
@@ -4,13 +4,11 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Set;
 
 import javax.swing.SwingUtilities;
 
 import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Vec2;
-import org.jgraph.graph.DefaultEdge;
 
 import sensors.Calibration;
 import sensors.STImagePanel;
@@ -86,10 +84,10 @@ public class LocalMapImagePanel extends STImagePanel {
 
 	private void drawClusters(Graphics g) {
 		// Draw the pucks as squares.
-		for (int k=0; k<SensedType.NPUCK_COLOURS; k++)
+		for (int k=0; k<localMap.palette.size(); k++)
 			for (Vec2 puckV : localMap.pucks[k]) {
 				Point p = localMap.getGridPoint(puckV.x, puckV.y);
-				SensedType pt = SensedType.getPuckType(k);
+				SensedType pt = localMap.palette.getType(k);
 				g.setColor(pt.color);
 				g.drawRect((p.x - PUCK_RADIUS) * cw, (p.y - PUCK_RADIUS) * ch,
 						PUCK_DIAM * cw, PUCK_DIAM * ch);
@@ -103,8 +101,7 @@ public class LocalMapImagePanel extends STImagePanel {
 		
 		for (Cluster cluster : localMap.clusters) {
 			// Draw the pucks involved in this cluster.
-			Set<Vec2> nodeSet = cluster.subgraph.vertexSet();
-			for (Vec2 nodeV : nodeSet) {
+			for (Vec2 nodeV : cluster.pucks) {
 				Point p = localMap.getGridPoint(nodeV.x, nodeV.y);
 				SensedType pt = SensedType.getPuckType(cluster.puckType);
 				g.setColor(pt.color);
@@ -112,16 +109,19 @@ public class LocalMapImagePanel extends STImagePanel {
 						PUCK_DIAM * cw, PUCK_DIAM * ch);
 			}
 
-			// Draw all of the edges of the cluster's subgraph.
-			Set<DefaultEdge> edgeSet = cluster.subgraph.edgeSet();
-			for (DefaultEdge edge : edgeSet) {
-				Vec2 source = cluster.subgraph.getEdgeSource(edge);
-				Vec2 target = cluster.subgraph.getEdgeTarget(edge);
-				Point p1 = localMap.getGridPoint(source.x, source.y);
-				Point p2 = localMap.getGridPoint(target.x, target.y);
-				g.setColor(Color.black);
-				g.drawLine(p1.x * cw, p1.y * ch, p2.x * cw, p2.y * ch);
-			}
+			// Draw all of the edges of the cluster's graph (i.e. between each
+			// pair of its pucks within the threshold distance).
+			for (int i=0; i<cluster.size; i++)
+				for (int j=i+1; j<cluster.size; j++) {
+					Vec2 source = cluster.pucks[i];
+					Vec2 target = cluster.pucks[j];
+					if (MathUtils.distance(source, target) >= LocalMap.CLUSTER_DISTANCE_THRESHOLD)
+						continue;
+					Point p1 = localMap.getGridPoint(source.x, source.y);
+					Point p2 = localMap.getGridPoint(target.x, target.y);
+					g.setColor(Color.black);
+					g.drawLine(p1.x * cw, p1.y * ch, p2.x * cw, p2.y * ch);
+				}
 		}
 	}
 
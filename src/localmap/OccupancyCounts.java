@@ -0,0 +1,110 @@
+package localmap;
+
+import sensors.STImage;
+import sensors.SensedType;
+
+/**
+ * Summed-area tables over an occupancy grid, giving the number of cells of a
+ * set of types within any rectangle in O(1).  A set of types is given as a
+ * mask with the bit 1 << code set for the code of each type (see 'mask').
+ * The table for a mask is built the first time it is asked for after the
+ * grid has changed, in a single pass over the grid, and is then shared by
+ * all queries until the grid changes again.  The tables are reused from one
+ * grid to the next.
+ *
+ * Cells are indexed as in the occupancy grid: cell (i, j) is j*width + i.
+ * Entry (i, j) of a table, at j*(width+1) + i, counts the cells of the
+ * rectangle [0, i) x [0, j).
+ */
+public class OccupancyCounts {
+
+	// The number of distinct masks for which tables are kept.
+	private static final int MAX_TABLES = 4;
+
+	final int width, height;
+
+	private byte[] grid;
+
+	private int[] masks = new int[MAX_TABLES];
+	private int[][] tables = new int[MAX_TABLES][];
+	private boolean[] valid = new boolean[MAX_TABLES];
+	private int nTables;
+
+	public OccupancyCounts(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Return the mask for the given type.  Masks for several types are
+	 * combined with '|'.
+	 */
+	public static int mask(SensedType type) {
+		return 1 << STImage.code(type);
+	}
+
+	/**
+	 * Count the cells of 'grid' from now on, discarding all tables built for
+	 * its previous contents.  The grid must not change until this is next
+	 * called.
+	 */
+	public void setGrid(byte[] grid) {
+		this.grid = grid;
+		for (int t=0; t<nTables; t++)
+			valid[t] = false;
+	}
+
+	/**
+	 * Return the number of cells of the types in 'mask' within the rectangle
+	 * from (i0, j0) to (i1, j1) inclusive.  The rectangle is clipped to the
+	 * grid.
+	 */
+	public int count(int mask, int i0, int j0, int i1, int j1) {
+		i0 = Math.max(i0, 0);
+		j0 = Math.max(j0, 0);
+		i1 = Math.min(i1, width - 1);
+		j1 = Math.min(j1, height - 1);
+		if (i0 > i1 || j0 > j1)
+			return 0;
+
+		int[] table = getTable(mask);
+		int w = width + 1;
+		return table[(j1+1)*w + i1+1] - table[j0*w + i1+1] - table[(j1+1)*w + i0] + table[j0*w + i0];
+	}
+
+	private int[] getTable(int mask) {
+		int t = 0;
+		while (t < nTables && masks[t] != mask)
+			t++;
+		if (t == nTables) {
+			if (nTables == MAX_TABLES) {
+				// Replace the last table rather than keep an unbounded set.
+				t = MAX_TABLES - 1;
+			} else {
+				tables[t] = new int[(width + 1) * (height + 1)];
+				nTables++;
+			}
+			masks[t] = mask;
+			valid[t] = false;
+		}
+		if (!valid[t]) {
+			build(tables[t], mask);
+			valid[t] = true;
+		}
+		return tables[t];
+	}
+
+	private void build(int[] table, int mask) {
+		// The first row and column of the table are left at 0.
+		int w = width + 1;
+		for (int j=0; j<height; j++) {
+			int rowSum = 0;
+			int g = j*width;
+			int above = j*w + 1, here = (j+1)*w + 1;
+			for (int i=0; i<width; i++) {
+				rowSum += (mask >>> grid[g + i]) & 1;
+				table[here + i] = table[above + i] + rowSum;
+			}
+		}
+	}
+}
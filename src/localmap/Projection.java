@@ -0,0 +1,113 @@
+package localmap;
+
+import java.util.IdentityHashMap;
+
+import sensors.Calibration;
+import sensors.Calibration.CalibDataPerPixel;
+
+/**
+ * The mapping between a calibrated camera's pixels and the cells of the
+ * LocalMap's occupancy grid.  This depends only on the calibration (and its
+ * maximum sensed distance) so it is computed once and shared (read-only) by
+ * all robots with the same calibration.  Obtain an instance via 'get'.
+ *
+ * Pixels are indexed as in the camera image (pixel (i, j) is
+ * j*imageWidth + i) and cells as in the occupancy grid (cell (i, j) is
+ * j*width + i).
+ */
+public class Projection {
+
+	// Ground-plane bounds of the calibrated pixels within the maximum sensed
+	// distance.
+	final float minXr, maxXr, minYr, maxYr;
+
+	// Dimensions of the occupancy grid.
+	final int width, height;
+
+	final int imageWidth, imageHeight;
+
+	// The cell onto which each pixel projects, or -1 for pixels which are
+	// uncalibrated, in the gripper hole or beyond the maximum sensed distance.
+	final int[] pixelToCell;
+
+	// Ground-plane coordinates of each cell.
+	final float[] cellX, cellY;
+
+	private final float maxSensedDistanceSqd;
+
+	private static IdentityHashMap<Calibration, Projection> cache = new IdentityHashMap<Calibration, Projection>();
+
+	/**
+	 * Return the projection for the given calibration, computing it only if
+	 * it has not been computed for the calibration's current maximum sensed
+	 * distance.
+	 */
+	public static synchronized Projection get(Calibration calib) {
+		Projection projection = cache.get(calib);
+		if (projection == null || projection.maxSensedDistanceSqd != calib.getMaxSensedDistanceSqd()) {
+			projection = new Projection(calib);
+			cache.put(calib, projection);
+		}
+		return projection;
+	}
+
+	private Projection(Calibration calib) {
+		maxSensedDistanceSqd = calib.getMaxSensedDistanceSqd();
+		imageWidth = calib.getImageWidth();
+		imageHeight = calib.getImageHeight();
+
+		float minXr = Float.POSITIVE_INFINITY, maxXr = Float.NEGATIVE_INFINITY;
+		float minYr = Float.POSITIVE_INFINITY, maxYr = Float.NEGATIVE_INFINITY;
+		for (int i=0; i<imageWidth; i++)
+			for (int j=0; j<imageHeight; j++) {
+				CalibDataPerPixel pixelCalib = calib.getCalibData(i, j);
+				if (pixelCalib != null) {
+					if (pixelCalib.Xr*pixelCalib.Xr + pixelCalib.Yr*pixelCalib.Yr > maxSensedDistanceSqd)
+						continue;
+
+					minXr = Math.min(minXr, pixelCalib.Xr);
+					maxXr = Math.max(maxXr, pixelCalib.Xr);
+					minYr = Math.min(minYr, pixelCalib.Yr);
+					maxYr = Math.max(maxYr, pixelCalib.Yr);
+				}
+			}
+		this.minXr = minXr;
+		this.maxXr = maxXr;
+		this.minYr = minYr;
+		this.maxYr = maxYr;
+
+		// Note that for height we utilize not the minimum Xr, but 0.
+		width = (int) (0.5 + (maxYr - minYr) / LocalMap.CELL_SIZE) + 1;
+		height = (int) (0.5 + (maxXr) / LocalMap.CELL_SIZE) + 1;
+
+		pixelToCell = new int[imageWidth * imageHeight];
+		for (int i=0; i<imageWidth; i++)
+			for (int j=0; j<imageHeight; j++) {
+				int p = j*imageWidth + i;
+				pixelToCell[p] = -1;
+				CalibDataPerPixel pixelCalib = calib.getCalibData(i, j);
+				if (pixelCalib == null || pixelCalib.gripperHole ||
+					pixelCalib.Xr*pixelCalib.Xr + pixelCalib.Yr*pixelCalib.Yr > maxSensedDistanceSqd)
+					continue;
+				pixelToCell[p] = getCellIndex(pixelCalib.Xr, pixelCalib.Yr);
+			}
+
+		cellX = new float[width * height];
+		cellY = new float[width * height];
+		for (int i=0; i<width; i++)
+			for (int j=0; j<height; j++) {
+				cellX[j*width + i] = LocalMap.CELL_SIZE * j;
+				cellY[j*width + i] = maxYr - LocalMap.CELL_SIZE * i;
+			}
+	}
+
+	/**
+	 * Return the index of the cell containing the ground-plane point (Xr, Yr),
+	 * as for LocalMap.getGridPoint.
+	 */
+	private int getCellIndex(float Xr, float Yr) {
+		int i = (int)(0.5 + (maxYr - Yr) / LocalMap.CELL_SIZE);
+		int j = (int)(0.5 + (Xr) / LocalMap.CELL_SIZE);
+		return j*width + i;
+	}
+}
@@ -0,0 +1,133 @@
+package localmap;
+
+/**
+ * The squared distance from each cell of an occupancy grid to the nearest cell
+ * of a given type (in practice ROBOT), in units of cells.  The field is the
+ * exact Euclidean distance transform of Felzenszwalb and Huttenlocher ("Distance
+ * Transforms of Sampled Functions", 2012), computed by a pass over the columns
+ * followed by a pass over the rows, so it costs O(cells) however many cells
+ * are of the type.  The cells of the type are also listed in the order in
+ * which the grid is scanned elsewhere (column by column).  Listing the cells
+ * is cheap, so the transform itself is only computed when a distance is first
+ * asked for.  The buffers are reused from one computation to the next.
+ *
+ * Cells are indexed as in the occupancy grid: cell (i, j) is j*width + i.
+ */
+public class RobotDistanceField {
+
+	// Stands in for the distance to a cell of the type when there is none.
+	static final float INF = 1e20f;
+
+	final int width, height;
+
+	// Squared distance (in cells) from each cell to the nearest cell of the
+	// type.
+	final float[] dSqd;
+
+	// The cells of the type, column by column.
+	final int[] cells;
+	int nCells;
+
+	private byte[] grid;
+	private byte code;
+	private boolean transformed;
+
+	// Buffers for the one-dimensional transform.
+	private float[] f, d, z;
+	private int[] v;
+
+	public RobotDistanceField(int width, int height) {
+		this.width = width;
+		this.height = height;
+		dSqd = new float[width * height];
+		cells = new int[width * height];
+		int n = Math.max(width, height);
+		f = new float[n];
+		d = new float[n];
+		z = new float[n + 1];
+		v = new int[n];
+	}
+
+	/**
+	 * Set the field to that of the cells of 'grid' (of this field's
+	 * dimensions) holding 'code'.  The grid must not change until the field
+	 * is next set.
+	 */
+	public void compute(byte[] grid, byte code) {
+		this.grid = grid;
+		this.code = code;
+		transformed = false;
+		nCells = 0;
+		for (int i=0; i<width; i++)
+			for (int c=i; c<grid.length; c+=width)
+				if (grid[c] == code)
+					cells[nCells++] = c;
+	}
+
+	private void transform() {
+		// Transform each column...
+		for (int i=0; i<width; i++) {
+			for (int j=0; j<height; j++)
+				f[j] = grid[j*width + i] == code ? 0 : INF;
+			transformLine(height);
+			for (int j=0; j<height; j++)
+				dSqd[j*width + i] = d[j];
+		}
+
+		// ...then each row of the result.
+		for (int j=0; j<height; j++) {
+			int row = j*width;
+			System.arraycopy(dSqd, row, f, 0, width);
+			transformLine(width);
+			System.arraycopy(d, 0, dSqd, row, width);
+		}
+	}
+
+	/**
+	 * The one-dimensional squared distance transform of f[0..n-1] into
+	 * d[0..n-1]: the lower envelope of the parabolas rooted at each sample.
+	 */
+	private void transformLine(int n) {
+		int k = 0;
+		v[0] = 0;
+		z[0] = -INF;
+		z[1] = INF;
+		for (int q=1; q<n; q++) {
+			float s = ((f[q] + q*q) - (f[v[k]] + v[k]*v[k])) / (2*q - 2*v[k]);
+			while (s <= z[k]) {
+				k--;
+				s = ((f[q] + q*q) - (f[v[k]] + v[k]*v[k])) / (2*q - 2*v[k]);
+			}
+			k++;
+			v[k] = q;
+			z[k] = s;
+			z[k+1] = INF;
+		}
+
+		k = 0;
+		for (int q=0; q<n; q++) {
+			while (z[k+1] < q)
+				k++;
+			d[q] = (q - v[k])*(q - v[k]) + f[v[k]];
+		}
+	}
+
+	/**
+	 * Return true if there are no cells of the type.
+	 */
+	public boolean isEmpty() {
+		return nCells == 0;
+	}
+
+	/**
+	 * Return the squared distance (in cells) from the given cell to the
+	 * nearest cell of the type.  Only valid if the field is not empty.
+	 */
+	public float getDistanceSqd(int cell) {
+		if (!transformed) {
+			transform();
+			transformed = true;
+		}
+		return dSqd[cell];
+	}
+}
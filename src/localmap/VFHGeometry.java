@@ -0,0 +1,120 @@
+package localmap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import org.jbox2d.common.Vec2;
+
+/**
+ * The per-cell quantities used by VFHPlus.  These depend only on the geometry
+ * of the LocalMap's occupancy grid and on a few parameters, so they are
+ * computed once and shared (read-only) by all VFHPlus instances with the same
+ * geometry and parameters---i.e. by all robots using the same calibration.
+ * Obtain an instance via 'get'.
+ *
+ * Cells are indexed as in the occupancy grid: cell (i, j) is j*width + i.
+ */
+public class VFHGeometry {
+
+	final int width, height;
+
+	// Ground-plane coordinates of each cell.
+	final float[] x, y;
+
+	// Eq. (1): Cell angle.
+	final float[] beta;
+
+	// Eq. (2): Base value for magnitude.
+	final float[] magnitude;
+
+	// The sectors filled by each cell (Eq. 6), clipped to the histogram.  The
+	// span is empty if startK > stopK.
+	final int[] startK, stopK;
+
+	// For each sector k, the cells whose span includes k in order of
+	// decreasing magnitude: sectorCells[sectorStart[k]] ...
+	// sectorCells[sectorStart[k+1] - 1].
+	final int[] sectorStart, sectorCells;
+
+	private static HashMap<String, VFHGeometry> cache = new HashMap<String, VFHGeometry>();
+
+	/**
+	 * Return the geometry for the given LocalMap and enlargement distance,
+	 * computing it only if no geometry with the same parameters exists.
+	 */
+	public static synchronized VFHGeometry get(LocalMap localMap, float safetyDistanceGamma) {
+		String key = localMap.getWidth() + " " + localMap.getHeight() + " " +
+				Float.floatToIntBits(localMap.maxYr) + " " + Float.floatToIntBits(safetyDistanceGamma) + " " +
+				VFHPlus.N + " " + Float.floatToIntBits(VFHPlus.START_ANGLE) + " " + Float.floatToIntBits(VFHPlus.ALPHA) + " " +
+				Float.floatToIntBits(VFHPlus.A) + " " + Float.floatToIntBits(VFHPlus.B);
+		VFHGeometry geometry = cache.get(key);
+		if (geometry == null) {
+			geometry = new VFHGeometry(localMap, safetyDistanceGamma);
+			cache.put(key, geometry);
+		}
+		return geometry;
+	}
+
+	private VFHGeometry(LocalMap localMap, float safetyDistanceGamma) {
+		width = localMap.getWidth();
+		height = localMap.getHeight();
+		int nCells = width * height;
+		x = new float[nCells];
+		y = new float[nCells];
+		beta = new float[nCells];
+		magnitude = new float[nCells];
+		startK = new int[nCells];
+		stopK = new int[nCells];
+
+		int N = VFHPlus.N;
+		int[] sectorCounts = new int[N];
+		for (int i=0; i<width; i++) {
+			for (int j=0; j<height; j++) {
+				int p = j*width + i;
+				Vec2 v = localMap.getGroundPlane(i, j);
+				x[p] = v.x;
+				y[p] = v.y;
+
+				float dSqd = v.x*v.x + v.y*v.y;
+
+				// Eq. (2): Base value for magnitude (actual occupancy certainty
+				// added in 'computePrimary').
+				magnitude[p] = Math.max(0, VFHPlus.A - VFHPlus.B*dSqd);
+
+				// Eq. (1): Cell angle
+				beta[p] = (float) Math.atan2(v.y, v.x);
+
+				// Eq. (4): Enlargement angle
+				float gamma = (float) (Math.asin((safetyDistanceGamma)/Math.sqrt(dSqd)));
+
+				// All sectors that correspond to the enlarged obstacle
+				// (Roughly equivalent with Eq. 6).
+				startK[p] = Math.max(0, VFHPlus.angleToIndex(beta[p] + gamma));
+				stopK[p] = Math.min(N-1, VFHPlus.angleToIndex(beta[p] - gamma) + 1);
+				for (int k=startK[p]; k<=stopK[p]; k++)
+					sectorCounts[k]++;
+			}
+		}
+
+		// Sort all cells by decreasing magnitude, then distribute them into
+		// the lists for each sector in that order.
+		Integer[] order = new Integer[nCells];
+		for (int p=0; p<nCells; p++)
+			order[p] = p;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer p, Integer q) {
+				return Float.compare(magnitude[q], magnitude[p]);
+			}
+		});
+
+		sectorStart = new int[N + 1];
+		for (int k=0; k<N; k++)
+			sectorStart[k+1] = sectorStart[k] + sectorCounts[k];
+		sectorCells = new int[sectorStart[N]];
+		int[] cursor = Arrays.copyOf(sectorStart, N);
+		for (int p : order)
+			for (int k=startK[p]; k<=stopK[p]; k++)
+				sectorCells[cursor[k]++] = p;
+	}
+}
@@ -9,7 +9,6 @@ import javax.swing.SwingUtilities;
 
 import org.jbox2d.callbacks.DebugDraw;
 import org.jbox2d.common.Color3f;
-import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Transform;
 import org.jbox2d.common.Vec2;
 
@@ -48,12 +47,17 @@ public class VFHPlus implements PropertiesListener {
 	// false, then the target specified
 	boolean goalDirected;
 	
-	// Pre-computed data.
-	Grid baseMagnitude, beta, gamma;
+	// Pre-computed data (shared with other robots).
+	VFHGeometry geometry;
 	
 	// The polar histogram after each stage of processing.
 	float[] primaryHistogram, binaryHistogram, maskedHistogram;
 	
+	// Whether each cell of the occupancy grid contributed to the primary
+	// histogram last time, and the sectors whose values must be recomputed.
+	boolean[] active;
+	boolean[] dirty;
+	
 	// The candidate directions.
 	ArrayList<CandidateDir> dirs = new ArrayList<CandidateDir>();
 	
@@ -73,10 +77,15 @@ public class VFHPlus implements PropertiesListener {
 	JFrame frame;
 	GridPanel primaryPanel, binaryPanel, maskedPanel, costPanel;
 
-	public static boolean enableDisplay;
+	boolean enableDisplay;
 
 	boolean propertiesUpdated;
 	
+	// If true the primary histogram is updated using only those cells which
+	// have changed since the last call.  Otherwise it is recomputed from all
+	// cells.  Both give identical results.
+	public static boolean INCREMENTAL_PRIMARY = true;
+	
 	// Length of the polar histogram.
 	public static int N = 72 + 1; // Make it odd so that the centre sector corresponds to 0
 	
@@ -103,16 +112,16 @@ public class VFHPlus implements PropertiesListener {
 	public static final int S_MAX = 8;
 
 	// Weights for the candidate direction cost functions
-	public static float MU_1; // High for goal-oriented
-	public static float MU_2;  // High to prefer small turns
-	public static float MU_3;  // High to prefer maintaining the same turn
+	float MU_1; // High for goal-oriented
+	float MU_2;  // High to prefer small turns
+	float MU_3;  // High to prefer maintaining the same turn
 	
 	// Parameters whose values are loaded from the current Experiment...
 
-	private static float SAFETY_DISTANCE_GAMMA, SAFETY_DISTANCE_MASK;
+	private float SAFETY_DISTANCE_GAMMA, SAFETY_DISTANCE_MASK;
 
 	// Hysteresis thresholds for forming the binary histogram.
-	private static float TAU_LO, TAU_HI;
+	private float TAU_LO, TAU_HI;
 	
 	public VFHPlus(LocalMap localMap, boolean goalDirected) {
 		this.goalDirected = goalDirected;
@@ -127,10 +136,14 @@ public class VFHPlus implements PropertiesListener {
 			MU_3 = 3;			
 		}
 		
-		initDataStructures(localMap);
-		
+		// The properties must be loaded first as SAFETY_DISTANCE_GAMMA is used
+		// in forming 'gamma'.  (Originally they were loaded afterwards, so the
+		// first VFHPlus created in a JVM had an enlargement angle of 0 while all
+		// others used VFHPlus.SAFETY_DISTANCE_GAMMA, which is the intended value.)
 		propertiesUpdated();
 
+		initDataStructures(localMap);
+
 		enableDisplay = !ExperimentManager.isActive();
 enableDisplay = false;
 		if (enableDisplay) {
@@ -180,32 +193,9 @@ enableDisplay = false;
 	}
 	
 	private void initDataStructures(LocalMap localMap) {
-		int w = localMap.getWidth();
-		int h = localMap.getHeight();
-		beta = new Grid(w, h);
-		gamma = new Grid(w, h);
-		baseMagnitude = new Grid(w, h);		
-		
-		for (int i=0; i<w; i++) {
-			for (int j=0; j<h; j++) {
-				Vec2 v = localMap.getGroundPlane(i, j);
-				
-				float dSqd = v.x*v.x + v.y*v.y;
-				
-				//if (dSqd > LocalMap.MAX_SENSED_DISTANCE_SQD)
-				//	continue;
-
-				// Eq. (2): Base value for magnitude (actual occupancy certainty
-				// added in 'computeHistogram').
-				baseMagnitude.data[i][j] = Math.max(0, A - B*dSqd);
-
-				// Eq. (1): Cell angle
-				beta.data[i][j] = (float) Math.atan2(v.y, v.x);
-				
-				// Eq. (4): Enlargement angle
-				gamma.data[i][j] = (float) (Math.asin((SAFETY_DISTANCE_GAMMA)/Math.sqrt(dSqd)));
-			}
-		}
+		geometry = VFHGeometry.get(localMap, SAFETY_DISTANCE_GAMMA);
+		active = new boolean[localMap.getWidth() * localMap.getHeight()];
+		dirty = new boolean[N];
 		
 		// Create the histograms.
 		primaryHistogram = new float[N];
@@ -298,7 +288,7 @@ enableDisplay = false;
 		// Compute histograms.
 		computePrimary(occ);
 		computeBinary();
-		computeMasked(localMap, occ);
+		computeMasked();
 		
 		computeCandidateDirections(targetAngle);
 
@@ -310,37 +300,74 @@ enableDisplay = false;
 		}
 	}
 	
+	/**
+	 * Fill the primary histogram from the occupancy grid.  Each sector holds
+	 * the largest magnitude of the active cells whose span includes it.
+	 */
 	private void computePrimary(STImage occ) {
-		// Zero primary histogram
-		for (int i=0; i<N; i++)
-			primaryHistogram[i] = 0;
-
-		// Fill primary histogram from occupancy grid.
-		int w = occ.width;
-		int h = occ.height;
-		for (int i=0; i<w; i++) {
-			for (int j=0; j<h; j++) {
-				if (occ.pixels[i][j] == SensedType.NOTHING ||
-					(ignorePucks && SensedType.isPuckType(occ.pixels[i][j])))
-					continue;
+		byte[] data = occ.data;
+		byte nothing = STImage.code(SensedType.NOTHING);
+		float[] magnitude = geometry.magnitude;
+		int[] startK = geometry.startK;
+		int[] stopK = geometry.stopK;
 
-				// Fill sectors all sectors that correspond to the enlarged obstacle
-				// (Roughly equivalent with Eq. 6).
-				int startK = angleToIndex(beta.data[i][j] + gamma.data[i][j]);
-				int stopK = angleToIndex(beta.data[i][j] - gamma.data[i][j]) + 1;
-				for (int k=startK; k<=stopK; k++) {
-					if (k >= 0 && k < N)
+		if (!INCREMENTAL_PRIMARY) {
+			for (int k=0; k<N; k++)
+				primaryHistogram[k] = 0;
+			for (int p=0; p<data.length; p++) {
+				active[p] = data[p] != nothing && !(ignorePucks && STImage.isPuck(data[p]));
+				if (active[p])
+					for (int k=startK[p]; k<=stopK[p]; k++)
 						// The following is closer to what is in the paper, but
 						// leads to very large values in the primary histogram
 						// and makes it difficult to find good values for TAU_HI
 						// and TAU_LO:
 						//
-						// primaryHistogram[k] += baseMagnitude.data[i][j];
+						// primaryHistogram[k] += magnitude[p];
 						//
 						// This keeps the histogram values bounded.
-						primaryHistogram[k] = Math.max(primaryHistogram[k], baseMagnitude.data[i][j]);
-				}
+						primaryHistogram[k] = Math.max(primaryHistogram[k], magnitude[p]);
 			}
+			return;
+		}
+
+		// Cells which have become active can only raise the sectors they
+		// span.  A cell which has become inactive may have held the maximum
+		// of some of its sectors, which are then recomputed below.
+		boolean anyDirty = false;
+		for (int p=0; p<data.length; p++) {
+			boolean a = data[p] != nothing && !(ignorePucks && STImage.isPuck(data[p]));
+			if (a == active[p])
+				continue;
+			active[p] = a;
+			if (a) {
+				for (int k=startK[p]; k<=stopK[p]; k++)
+					primaryHistogram[k] = Math.max(primaryHistogram[k], magnitude[p]);
+			} else {
+				for (int k=startK[p]; k<=stopK[p]; k++)
+					if (primaryHistogram[k] == magnitude[p]) {
+						dirty[k] = true;
+						anyDirty = true;
+					}
+			}
+		}
+		if (!anyDirty)
+			return;
+
+		// The cells of each sector are ordered by decreasing magnitude, so the
+		// first active one gives the sector's value.
+		int[] sectorStart = geometry.sectorStart;
+		int[] sectorCells = geometry.sectorCells;
+		for (int k=0; k<N; k++) {
+			if (!dirty[k])
+				continue;
+			dirty[k] = false;
+			primaryHistogram[k] = 0;
+			for (int n=sectorStart[k]; n<sectorStart[k+1]; n++)
+				if (active[sectorCells[n]]) {
+					primaryHistogram[k] = magnitude[sectorCells[n]];
+					break;
+				}
 		}
 	}
 		
@@ -355,7 +382,7 @@ enableDisplay = false;
 		}
 	}
 	
-	private void computeMasked(LocalMap localMap, STImage occ) {
+	private void computeMasked() {
 		// Compute masked histogram: Eq. (8) - (11) ...
 		
 		// Left and right trajectory centers...  Ideally these should be computed
@@ -366,26 +393,29 @@ enableDisplay = false;
 		float safetyRadiusSqd = (float) Math.pow(leftCenter.y + SAFETY_DISTANCE_MASK, 2);
 		
 		// Determine left and right limit angles based on trajectory centers and
-		// active cells from the occupancy grid.
+		// active cells from the occupancy grid (as determined by
+		// 'computePrimary').
 		float leftLimit = START_ANGLE;
 		float rightLimit = STOP_ANGLE;
-		int w = occ.width;
-		int h = occ.height;
-		for (int i=0; i<w; i++)
-			for (int j=0; j<h; j++) {
-				if (occ.pixels[i][j] == SensedType.NOTHING ||
-					(ignorePucks && SensedType.isPuckType(occ.pixels[i][j])))
-					continue;
+		float[] x = geometry.x;
+		float[] y = geometry.y;
+		float[] beta = geometry.beta;
+		for (int p=0; p<active.length; p++) {
+			if (!active[p])
+				continue;
 
-				Vec2 v = localMap.getGroundPlane(i, j);
-				float b = beta.data[i][j];
-				if (b < 0 && b > rightLimit && // Now condition 1: Eq. (10a)
-						MathUtils.distanceSquared(v, rightCenter) < safetyRadiusSqd)
+			float b = beta[p];
+			if (b < 0 && b > rightLimit) { // Now condition 1: Eq. (10a)
+				float dx = x[p] - rightCenter.x, dy = y[p] - rightCenter.y;
+				if (dx*dx + dy*dy < safetyRadiusSqd)
 					rightLimit = b;
-				if (b > 0 && b < leftLimit && // Now condition 2: Eq. (10b)
-						MathUtils.distanceSquared(v, leftCenter) < safetyRadiusSqd)
+			}
+			if (b > 0 && b < leftLimit) { // Now condition 2: Eq. (10b)
+				float dx = x[p] - leftCenter.x, dy = y[p] - leftCenter.y;
+				if (dx*dx + dy*dy < safetyRadiusSqd)
 					leftLimit = b;
 			}
+		}
 		//System.out.println("leftLimit: " + leftLimit + ", rightLimit: " + rightLimit);
 		
 		// Eq. (11)
@@ -471,6 +501,10 @@ enableDisplay = false;
 		}
 	}
 
+	public float[] getPrimaryHistogram() {
+		return primaryHistogram;
+	}
+
 	public static final float indexToAngle(int k) {
 		return START_ANGLE - k * ALPHA;
 	}
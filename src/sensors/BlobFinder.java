@@ -3,23 +3,60 @@ package sensors;
 import java.util.ArrayList;
 import java.util.Iterator;
 
-import arena.Grid;
-
+/**
+ * Finds the 8-connected blobs of pixels of one or more given types within a
+ * rectangular window of an STCameraImage.  All of the requested types are
+ * labelled in a single pass over the image, with each blob flood-filled using
+ * an explicit stack rather than recursion (so large blobs cannot overflow the
+ * call stack).  The label and stack buffers are kept between calls, so a
+ * BlobFinder created once per robot allocates nothing per image other than
+ * the Blobs themselves.
+ *
+ * As before, blobs are only started from pixels in rows yMin to yMax-1 but
+ * may extend into row yMax.
+ */
 public class BlobFinder {
-	
+
 	STCameraImage image;
-	Grid labels;
 	int xMin, xMax, yMin, yMax;
 	SensedType type;
-	
-	// Quantities which are shared between recursive calls.
-	int label;
-	int blobArea, blobX0, blobX1, blobY0, blobY1;
-//	float blobGroundArea;
-	
+
+	// 'labels' holds the value of 'stamp' for each pixel visited in the
+	// current call.  Incrementing 'stamp' therefore clears all labels.
+	int width, height;
+	int[] labels;
+	int stamp;
+
+	// Pixels (as indices into the image data) waiting to be visited by the
+	// current flood fill.  Each pixel is labelled when pushed, so is pushed
+	// at most once.
+	int[] stack;
+
+	// Index into 'blobs' of each SensedType (by ordinal) or -1 for types that
+	// are not being sought.
+	int[] typeIndex = new int[SensedType.values().length];
+
+	// The blobs found for each sought type.
+	ArrayList<Blob>[] blobs;
+
+	/**
+	 * Create a BlobFinder for images of the given size.  Use 'findBlobs' and
+	 * 'getBlobs(int)'.
+	 */
+	public BlobFinder(int width, int height) {
+		this.width = width;
+		this.height = height;
+		labels = new int[width * height];
+		stack = new int[width * height];
+	}
+
+	/**
+	 * Create a BlobFinder for blobs of a single type in the given image.  Use
+	 * 'getBlobs()'.
+	 */
 	public BlobFinder(STCameraImage image, SensedType type, int xMin, int xMax, int yMin, int yMax) {
+		this(image.width, image.height);
 		this.image = image;
-		labels = new Grid(image.width, image.height);
 		this.type = type;
 		this.xMin = xMin;
 		this.xMax = xMax;
@@ -28,99 +65,142 @@ public class BlobFinder {
 	}
 
 	public ArrayList<Blob> getBlobs() {
-		labels.setAll(0);
-		
-		// Go through all image pixels and launch a recursive labelling process
-		// on those which are unlabelled and have the right type.
-		ArrayList<Blob> blobs = new ArrayList<Blob>();
+		findBlobs(image, new SensedType[] { type }, xMin, xMax, yMin, yMax);
+		return blobs[0];
+	}
 
-		label = 1;
-		for (int i=xMin; i<=xMax; i++)
-			for (int j=yMin; j<yMax; j++)
-				if (image.pixels[i][j] == type && labels.data[i][j] == 0) {
-					blobs.add( extractBlob(i, j, label) );
-					label++;
-				}
-	
-		return blobs;
+	/**
+	 * Return the blobs found by the last call to 'findBlobs' for types[k].
+	 * The list is reused by the next call.
+	 */
+	public ArrayList<Blob> getBlobs(int k) {
+		return blobs[k];
 	}
 
 	/**
-	 * Determine the blob which includes pixel (i, j) as one of its
-	 * members.
+	 * Find the blobs of each of the given types within the given window.  For
+	 * each type the blobs are ordered by the position of their first pixel in
+	 * a scan of columns from left to right (each column top to bottom).
 	 */
-	private Blob extractBlob(int i, int j, int label) {
-		blobArea = 0;
-//		blobGroundArea = 0;
-		blobX0 = Integer.MAX_VALUE;
-		blobX1 = -Integer.MAX_VALUE;
-		blobY0 = Integer.MAX_VALUE;
-		blobY1 = -Integer.MAX_VALUE;
-		recursiveBlobber(i, j);
-		return new Blob(blobX0, blobX1, blobY0, blobY1, blobArea/*, blobGroundArea*/);
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void findBlobs(STCameraImage image, SensedType[] types, int xMin, int xMax, int yMin, int yMax) {
+		if (image.width != width || image.height != height) {
+			System.err.println("BlobFinder: Image size does not match!");
+			System.exit(-1);
+		}
+		this.image = image;
+		this.xMin = xMin;
+		this.xMax = xMax;
+		this.yMin = yMin;
+		this.yMax = yMax;
+
+		if (blobs == null || blobs.length != types.length) {
+			blobs = new ArrayList[types.length];
+			for (int k=0; k<types.length; k++)
+				blobs[k] = new ArrayList<Blob>();
+		}
+		for (int t=0; t<typeIndex.length; t++)
+			typeIndex[t] = -1;
+		for (int k=0; k<types.length; k++) {
+			typeIndex[types[k].ordinal()] = k;
+			blobs[k].clear();
+		}
+
+		stamp++;
+		if (stamp == Integer.MAX_VALUE) {
+			for (int p=0; p<labels.length; p++)
+				labels[p] = 0;
+			stamp = 1;
+		}
+
+		byte[] data = image.data;
+		for (int i=xMin; i<=xMax; i++)
+			for (int j=yMin; j<yMax; j++) {
+				int p = j*width + i;
+				int k = typeIndex[data[p]];
+				if (k != -1 && labels[p] != stamp)
+					blobs[k].add( extractBlob(p) );
+			}
 	}
-	
-	private void recursiveBlobber(int i, int j) {
-	    if (i < xMin || i > xMax || j < yMin || j > yMax)
-	    	// (i, j) is out of bounds.
-	        return;
-	    else if (image.pixels[i][j] != type || labels.data[i][j] != 0)
-	    	// Pixel is the wrong type or has already been labelled.
-	        return;
-	    else {
-	    	// The two base cases above handle invalid pixels or pixels that do
-	    	// not belong to this Blob.  Therefore, we know that (i, j) does
-	    	// belong.  Update the blob statistics.
-	    	blobArea++;
-//	    	blobGroundArea += image.getCalibration().getCalibData(i, j).groundArea;
-	    	if (i < blobX0) blobX0 = i;
-	    	if (i > blobX1) blobX1 = i;
-	    	if (j < blobY0) blobY0 = j;
-	    	if (j > blobY1) blobY1 = j;
-	    	
-	        labels.data[i][j] = label;
-
-	        // 4-connected
-	        /*
-	        recursiveBlobber(i  , j-1);
-	        recursiveBlobber(i-1, j  );
-	        recursiveBlobber(i+1, j  );
-	        recursiveBlobber(i  , j+1);
-	        */
-
-	        // 8-connected.
-	        recursiveBlobber(i-1, j-1);
-	        recursiveBlobber(i  , j-1);
-	        recursiveBlobber(i+1, j-1);
-	        recursiveBlobber(i-1, j  );
-	        recursiveBlobber(i+1, j  );
-	        recursiveBlobber(i-1, j+1);
-	        recursiveBlobber(i  , j+1);
-	        recursiveBlobber(i+1, j+1);
-	    }
+
+	/**
+	 * Flood fill the blob which includes the unlabelled pixel with index 'start'.
+	 */
+	private Blob extractBlob(int start) {
+		byte[] data = image.data;
+		byte blobType = data[start];
+		int blobArea = 0;
+		int blobX0 = Integer.MAX_VALUE;
+		int blobX1 = -Integer.MAX_VALUE;
+		int blobY0 = Integer.MAX_VALUE;
+		int blobY1 = -Integer.MAX_VALUE;
+
+		int top = 0;
+		labels[start] = stamp;
+		stack[top++] = start;
+		while (top > 0) {
+			int p = stack[--top];
+			int pj = p / width;
+			int pi = p - pj*width;
+
+			blobArea++;
+			if (pi < blobX0) blobX0 = pi;
+			if (pi > blobX1) blobX1 = pi;
+			if (pj < blobY0) blobY0 = pj;
+			if (pj > blobY1) blobY1 = pj;
+
+			// 8-connected.
+			int i0 = Math.max(pi - 1, xMin), i1 = Math.min(pi + 1, xMax);
+			int j0 = Math.max(pj - 1, yMin), j1 = Math.min(pj + 1, yMax);
+			for (int nj=j0; nj<=j1; nj++)
+				for (int ni=i0; ni<=i1; ni++) {
+					int q = nj*width + ni;
+					if (data[q] == blobType && labels[q] != stamp) {
+						labels[q] = stamp;
+						stack[top++] = q;
+					}
+				}
+		}
+		return new Blob(blobX0, blobX1, blobY0, blobY1, blobArea);
 	}
 
 	/**
 	 * Applied after getBlobs to remove blobs which are within the given
-	 * distance to the given type.
+	 * distance to the given type.  The distance between a blob and a pixel is
+	 * taken as that between the pixel and the nearest corner of the blob's
+	 * bounding box, so only the pixels within 'distance' of each corner are
+	 * searched.
 	 */
 	public void filterBlobsNear(ArrayList<Blob> blobs, SensedType badType, float distance) {
 		// Square the distance so we can just compare to squared distances below.
-		distance *= distance;
-		for (int i=xMin; i<=xMax; i++)
-			for (int j=yMin; j<yMax; j++)
-				if (image.pixels[i][j] == badType) {
-					// Go through all blobs and remove those that have a squared
-					// distance smaller than or equal to distance.
-					Iterator<Blob> it = blobs.iterator();
-					while (it.hasNext()) {
-					   Blob b = it.next();
-					   int dx = Math.min(Math.abs(b.getX0() - i), Math.abs(b.getX1() - i));
-					   int dy = Math.min(Math.abs(b.getY0() - j), Math.abs(b.getY1() - j));
-					   if (dx*dx + dy*dy <= distance)
-						   it.remove();
-					}
+		float distanceSqd = distance * distance;
+		int r = (int) Math.floor(Math.abs(distance));
+		Iterator<Blob> it = blobs.iterator();
+		while (it.hasNext()) {
+			Blob b = it.next();
+			if (nearCorner(b.getX0(), b.getY0(), r, badType, distanceSqd) ||
+				nearCorner(b.getX0(), b.getY1(), r, badType, distanceSqd) ||
+				nearCorner(b.getX1(), b.getY0(), r, badType, distanceSqd) ||
+				nearCorner(b.getX1(), b.getY1(), r, badType, distanceSqd))
+				it.remove();
+		}
+	}
 
-				}
+	/**
+	 * Return true if a pixel of the given type within the window lies within
+	 * the given squared distance of (x, y).
+	 */
+	private boolean nearCorner(int x, int y, int r, SensedType badType, float distanceSqd) {
+		int i0 = Math.max(x - r, xMin), i1 = Math.min(x + r, xMax);
+		int j0 = Math.max(y - r, yMin), j1 = Math.min(y + r, yMax - 1);
+		byte[] data = image.data;
+		byte badCode = STImage.code(badType);
+		for (int j=j0; j<=j1; j++)
+			for (int i=i0; i<=i1; i++) {
+				int dx = x - i, dy = y - j;
+				if (dx*dx + dy*dy <= distanceSqd && data[j*width + i] == badCode)
+					return true;
+			}
+		return false;
 	}
 }
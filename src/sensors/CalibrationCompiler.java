@@ -0,0 +1,114 @@
+package sensors;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the calibration files in each given directory into the binary form
+ * read by CalibrationFile.  A GridCalibration is compiled for each resolution
+ * with a phase2 .csv file and an OCamCalibration if 'srvCalibration.txt' is
+ * present.  Each compiled file is read back and checked against the text
+ * version, and the time taken to load each version is reported.  With no
+ * arguments, every calibration directory under GridCamera.CALIB_DIR is
+ * compiled.  Usage:
+ *
+ *     CalibrationCompiler [DIR ...]
+ */
+public class CalibrationCompiler {
+
+	private static final Pattern PHASE2_PATTERN = Pattern.compile("phase2_(\\d+)x(\\d+)\\.csv");
+
+	public static void main(String[] args) {
+		String[] dirs = args;
+		if (dirs.length == 0) {
+			File[] files = new File(GridCamera.CALIB_DIR).listFiles();
+			if (files == null) {
+				System.err.println("CalibrationCompiler: directory " + GridCamera.CALIB_DIR + " does not exist!");
+				System.exit(-1);
+			}
+			Arrays.sort(files);
+			dirs = new String[files.length];
+			for (int i=0; i<files.length; i++)
+				dirs[i] = files[i].getPath();
+		}
+
+		for (String dir : dirs) {
+			File[] files = new File(dir).listFiles();
+			if (files == null)
+				continue;
+			Arrays.sort(files);
+			for (File file : files) {
+				Matcher m = PHASE2_PATTERN.matcher(file.getName());
+				if (m.matches())
+					compileGrid(dir, Integer.valueOf(m.group(1)), Integer.valueOf(m.group(2)));
+			}
+			if (new File(dir + File.separatorChar + "srvCalibration.txt").exists())
+				compileOCam(dir);
+		}
+	}
+
+	private static void compileGrid(String dir, int width, int height) {
+		long start = System.nanoTime();
+		GridCalibration calib = new GridCalibration(dir, width, height, false);
+		long textTime = System.nanoTime() - start;
+
+		String filename = CalibrationFile.getGridFilename(dir, width, height);
+		String[] sources = CalibrationFile.getGridSources(dir, width, height);
+		CalibrationFile file = calib.toFile();
+		file.write(filename, sources);
+
+		start = System.nanoTime();
+		new GridCalibration(dir, width, height, true);
+		long binaryTime = System.nanoTime() - start;
+
+		check(filename, file, CalibrationFile.read(filename, sources, CalibrationFile.GRID, width, height));
+		report(filename, textTime, binaryTime);
+	}
+
+	private static void compileOCam(String dir) {
+		long start = System.nanoTime();
+		OCamCalibration calib = new OCamCalibration(dir, false);
+		long textTime = System.nanoTime() - start;
+
+		String filename = CalibrationFile.getOCamFilename(dir);
+		String[] sources = CalibrationFile.getOCamSources(dir);
+		CalibrationFile file = calib.toFile();
+		file.write(filename, sources);
+
+		start = System.nanoTime();
+		new OCamCalibration(dir, true);
+		long binaryTime = System.nanoTime() - start;
+
+		check(filename, file, CalibrationFile.read(filename, sources, CalibrationFile.OCAM,
+				calib.getImageWidth(), calib.getImageHeight()));
+		report(filename, textTime, binaryTime);
+	}
+
+	private static void check(String filename, CalibrationFile written, CalibrationFile read) {
+		boolean same = read != null &&
+				Arrays.equals(written.calibrated, read.calibrated) &&
+				Arrays.equals(written.gripperBody, read.gripperBody) &&
+				Arrays.equals(written.gripperHole, read.gripperHole) &&
+				Arrays.equals(written.xr, read.xr) &&
+				Arrays.equals(written.yr, read.yr) &&
+				Arrays.equals(written.masked, read.masked) &&
+				Arrays.equals(written.avoidWallLeft, read.avoidWallLeft) &&
+				Arrays.equals(written.avoidWallRight, read.avoidWallRight) &&
+				Arrays.equals(written.avoidOtherRobotLeft, read.avoidOtherRobotLeft) &&
+				Arrays.equals(written.avoidOtherRobotRight, read.avoidOtherRobotRight) &&
+				Arrays.equals(written.unreachable, read.unreachable) &&
+				Arrays.equals(written.robotHeight, read.robotHeight) &&
+				Arrays.equals(written.puckHeight, read.puckHeight) &&
+				Arrays.equals(written.groundArea, read.groundArea);
+		if (!same) {
+			System.err.println("CalibrationCompiler: " + filename + " does not match the text calibration!");
+			System.exit(-1);
+		}
+	}
+
+	private static void report(String filename, long textTime, long binaryTime) {
+		System.out.println(filename + ": text " + textTime / 1e6 + " ms, binary " + binaryTime / 1e6 + " ms");
+	}
+}
@@ -0,0 +1,269 @@
+package sensors;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The precompiled binary form of a calibration, as written by
+ * CalibrationCompiler.  Loading a calibration from this form avoids parsing
+ * its text files and decoding its PNG masks.  The file is memory mapped and
+ * copied into the flat arrays below.  Pixel (i, j) has index j*width + i,
+ * as in STImage.  The flags of each pixel are stored as bitsets.
+ *
+ * The file consists of a header (magic number, version, kind, width, height
+ * and a checksum of the source files it was compiled from) followed by the
+ * bitsets, the float arrays and then the int arrays, each in the order given
+ * by getBitsets, getFloatArrays and getIntArrays.  The OCam arrays are present
+ * only for OCAM files.  If the source files are present and no longer match
+ * the checksum, the file is considered stale and is not used.
+ */
+public class CalibrationFile {
+
+	public static final int MAGIC = 0x50534342; // "PSCB"
+	public static final int VERSION = 1;
+
+	// The kinds of calibration.
+	public static final int GRID = 0;
+	public static final int OCAM = 1;
+
+	private static final int HEADER_SIZE = 28;
+
+	public int kind, width, height;
+
+	// Whether each pixel is calibrated, part of the gripper body and part of
+	// the gripper hole.
+	public long[] calibrated, gripperBody, gripperHole;
+
+	// Ground-plane coordinates of each calibrated pixel (i.e. CalibDataPerPixel's
+	// Xr and Yr).
+	public float[] xr, yr;
+
+	// OCamCalibration.ExtraDataPerPixel for each calibrated pixel.
+	public long[] masked, avoidWallLeft, avoidWallRight, avoidOtherRobotLeft,
+			avoidOtherRobotRight, unreachable;
+	public int[] robotHeight, puckHeight;
+	public float[] groundArea;
+
+	public CalibrationFile(int kind, int width, int height) {
+		this.kind = kind;
+		this.width = width;
+		this.height = height;
+		int n = width * height;
+		calibrated = newBitset(n);
+		gripperBody = newBitset(n);
+		gripperHole = newBitset(n);
+		xr = new float[n];
+		yr = new float[n];
+		if (kind == OCAM) {
+			masked = newBitset(n);
+			avoidWallLeft = newBitset(n);
+			avoidWallRight = newBitset(n);
+			avoidOtherRobotLeft = newBitset(n);
+			avoidOtherRobotRight = newBitset(n);
+			unreachable = newBitset(n);
+			robotHeight = new int[n];
+			puckHeight = new int[n];
+			groundArea = new float[n];
+		}
+	}
+
+	public static String getGridFilename(String dir, int width, int height) {
+		return dir + File.separatorChar + "calib_" + width + "x" + height + ".bin";
+	}
+
+	public static String[] getGridSources(String dir, int width, int height) {
+		String resCode = width + "x" + height;
+		return new String[] { dir + File.separatorChar + "phase2_" + resCode + ".csv",
+				dir + File.separatorChar + "gripperBody_" + resCode + ".png",
+				dir + File.separatorChar + "gripperHole_" + resCode + ".png" };
+	}
+
+	public static String getOCamFilename(String dir) {
+		return dir + File.separatorChar + "calib.bin";
+	}
+
+	public static String[] getOCamSources(String dir) {
+		return new String[] { dir + File.separatorChar + "srvCalibration.txt",
+				dir + File.separatorChar + "mask.png",
+				dir + File.separatorChar + "gripperBody.png",
+				dir + File.separatorChar + "gripperHole.png" };
+	}
+
+	public int index(int i, int j) {
+		return j*width + i;
+	}
+
+	private static long[] newBitset(int n) {
+		return new long[(n + 63) / 64];
+	}
+
+	public static boolean get(long[] bits, int p) {
+		return (bits[p >>> 6] & (1L << p)) != 0;
+	}
+
+	public static void set(long[] bits, int p) {
+		bits[p >>> 6] |= 1L << p;
+	}
+
+	/**
+	 * Read the given file, which must be of the given kind and size.  Returns
+	 * null if the file does not exist, has a different version or is stale
+	 * with respect to the given source files.
+	 */
+	public static CalibrationFile read(String filename, String[] sources, int kind, int width, int height) {
+		if (!new File(filename).exists())
+			return null;
+
+		MappedByteBuffer buffer = null;
+		try {
+			RandomAccessFile file = new RandomAccessFile(filename, "r");
+			FileChannel channel = file.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			file.close();
+		} catch (IOException e) {
+			System.err.println("CalibrationFile: Problem reading " + filename);
+			System.exit(-1);
+		}
+
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			System.err.println("CalibrationFile: Not a calibration file: " + filename);
+			System.exit(-1);
+		}
+		if (buffer.getInt(4) != VERSION) {
+			System.err.println("CalibrationFile: Ignoring " + filename + " which has version "
+					+ buffer.getInt(4) + " (expected " + VERSION + ")");
+			return null;
+		}
+		if (buffer.getInt(8) != kind || buffer.getInt(12) != width || buffer.getInt(16) != height) {
+			System.err.println("CalibrationFile: " + filename + " is not of the expected kind or size");
+			System.exit(-1);
+		}
+		long checksum = getChecksum(sources);
+		if (checksum != -1 && checksum != buffer.getLong(20)) {
+			System.err.println("CalibrationFile: Ignoring " + filename
+					+ " which is out of date (rerun CalibrationCompiler)");
+			return null;
+		}
+
+		CalibrationFile calib = new CalibrationFile(kind, width, height);
+		if (buffer.capacity() != HEADER_SIZE + calib.getDataSize()) {
+			System.err.println("CalibrationFile: " + filename + " is truncated");
+			System.exit(-1);
+		}
+		buffer.position(HEADER_SIZE);
+		for (long[] bits : calib.getBitsets()) {
+			buffer.asLongBuffer().get(bits);
+			buffer.position(buffer.position() + 8 * bits.length);
+		}
+		for (float[] values : calib.getFloatArrays()) {
+			buffer.asFloatBuffer().get(values);
+			buffer.position(buffer.position() + 4 * values.length);
+		}
+		for (int[] values : calib.getIntArrays()) {
+			buffer.asIntBuffer().get(values);
+			buffer.position(buffer.position() + 4 * values.length);
+		}
+		return calib;
+	}
+
+	/**
+	 * Write to the given file, recording the checksum of the given source
+	 * files.
+	 */
+	public void write(String filename, String[] sources) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + getDataSize());
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(kind);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		buffer.putLong(getChecksum(sources));
+		for (long[] bits : getBitsets())
+			for (long word : bits)
+				buffer.putLong(word);
+		for (float[] values : getFloatArrays())
+			for (float value : values)
+				buffer.putFloat(value);
+		for (int[] values : getIntArrays())
+			for (int value : values)
+				buffer.putInt(value);
+		buffer.flip();
+
+		try {
+			RandomAccessFile file = new RandomAccessFile(filename, "rw");
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			file.close();
+		} catch (IOException e) {
+			System.err.println("CalibrationFile: Problem writing " + filename);
+			System.exit(-1);
+		}
+	}
+
+	private long[][] getBitsets() {
+		if (kind == OCAM)
+			return new long[][] { calibrated, gripperBody, gripperHole, masked, avoidWallLeft,
+					avoidWallRight, avoidOtherRobotLeft, avoidOtherRobotRight, unreachable };
+		else
+			return new long[][] { calibrated, gripperBody, gripperHole };
+	}
+
+	private float[][] getFloatArrays() {
+		if (kind == OCAM)
+			return new float[][] { xr, yr, groundArea };
+		else
+			return new float[][] { xr, yr };
+	}
+
+	private int[][] getIntArrays() {
+		if (kind == OCAM)
+			return new int[][] { robotHeight, puckHeight };
+		else
+			return new int[0][];
+	}
+
+	private int getDataSize() {
+		int size = 0;
+		for (long[] bits : getBitsets())
+			size += 8 * bits.length;
+		for (float[] values : getFloatArrays())
+			size += 4 * values.length;
+		for (int[] values : getIntArrays())
+			size += 4 * values.length;
+		return size;
+	}
+
+	/**
+	 * Return a checksum of the contents of the given files, or -1 if none of
+	 * them exist.
+	 */
+	static long getChecksum(String[] sources) {
+		CRC32 crc = new CRC32();
+		boolean any = false;
+		byte[] bytes = new byte[1 << 16];
+		for (String source : sources) {
+			if (!new File(source).exists())
+				continue;
+			any = true;
+			try {
+				FileInputStream in = new FileInputStream(source);
+				int n;
+				while ((n = in.read(bytes)) > 0)
+					crc.update(bytes, 0, n);
+				in.close();
+			} catch (IOException e) {
+				System.err.println("CalibrationFile: Problem reading " + source);
+				System.exit(-1);
+			}
+		}
+		return any ? crc.getValue() : -1;
+	}
+}
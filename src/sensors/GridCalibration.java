@@ -4,6 +4,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Scanner;
 
 import javax.imageio.ImageIO;
@@ -16,7 +17,12 @@ import javax.imageio.ImageIO;
  * 'gridCalibrationPhase2.py' are then used to pick out the puck centres and
  * interpolate in-between pucks.  This yields the .csv files that are read here.
  * We also require 'gripperBody.png' and 'gripperHole.png' which are image
- * masks that indicate the gripper's body and hole, respectively.
+ * masks that indicate the gripper's body and hole, respectively.  If a
+ * precompiled binary form of these files exists (see CalibrationCompiler) it
+ * is loaded instead.
+ * 
+ * A calibration is never modified once loaded, so all robots share the same
+ * instance.  Use 'get' rather than the constructor to obtain it.
  * 
  * @author av
  */
@@ -47,15 +53,51 @@ public class GridCalibration implements Calibration {
 	// The maximum distance (squared) of feasible clusters
 	public static float MAX_CLUSTER_DISTANCE_SQD = Float.MAX_VALUE;
 
+	// Calibrations loaded so far, keyed by directory and resolution.
+	private static HashMap<String, GridCalibration> cache = new HashMap<String, GridCalibration>();
+
+	/**
+	 * Return the calibration stored in the given directory for the given
+	 * resolution, loading it only if it has not been loaded before.
+	 */
+	public static synchronized GridCalibration get(String dir, int imageWidth, int imageHeight) {
+		String key = new File(dir).getAbsolutePath() + File.pathSeparator + imageWidth + "x" + imageHeight;
+		GridCalibration calib = cache.get(key);
+		if (calib == null) {
+			calib = new GridCalibration(dir, imageWidth, imageHeight);
+			cache.put(key, calib);
+		}
+		return calib;
+	}
+
 	/**
 	 * Construct from the calibration files stored in the given directory.
 	 */
 	public GridCalibration(String dir, int imageWidth, int imageHeight) {
+		this(dir, imageWidth, imageHeight, true);
+	}
+
+	/**
+	 * Construct from the calibration files stored in the given directory,
+	 * using the binary form (if it exists) only if 'useBinary' is true.
+	 */
+	GridCalibration(String dir, int imageWidth, int imageHeight, boolean useBinary) {
 		this.imageWidth = imageWidth;
 		this.imageHeight = imageHeight;
 
 		calibData = new CalibDataPerPixel[imageWidth][imageHeight];
 
+		if (useBinary) {
+			CalibrationFile file = CalibrationFile.read(
+					CalibrationFile.getGridFilename(dir, imageWidth, imageHeight),
+					CalibrationFile.getGridSources(dir, imageWidth, imageHeight),
+					CalibrationFile.GRID, imageWidth, imageHeight);
+			if (file != null) {
+				load(file);
+				return;
+			}
+		}
+
 		String resCode = imageWidth + "x" + imageHeight;
 
 		try {
@@ -113,6 +155,44 @@ public class GridCalibration implements Calibration {
 		}				
 	}
 
+	private void load(CalibrationFile file) {
+		for (int i=0; i<imageWidth; i++)
+			for (int j=0; j<imageHeight; j++) {
+				int p = file.index(i, j);
+				if (!CalibrationFile.get(file.calibrated, p))
+					continue;
+				CalibDataPerPixel pixelCalib = calibData[i][j] = new CalibDataPerPixel();
+				pixelCalib.Xr = file.xr[p];
+				pixelCalib.Yr = file.yr[p];
+				pixelCalib.gripperBody = CalibrationFile.get(file.gripperBody, p);
+				pixelCalib.gripperHole = CalibrationFile.get(file.gripperHole, p);
+				if (pixelCalib.gripperHole)
+					nHolePixels++;
+			}
+	}
+
+	/**
+	 * Return the binary form of this calibration.
+	 */
+	CalibrationFile toFile() {
+		CalibrationFile file = new CalibrationFile(CalibrationFile.GRID, imageWidth, imageHeight);
+		for (int i=0; i<imageWidth; i++)
+			for (int j=0; j<imageHeight; j++) {
+				CalibDataPerPixel pixelCalib = calibData[i][j];
+				if (pixelCalib == null)
+					continue;
+				int p = file.index(i, j);
+				CalibrationFile.set(file.calibrated, p);
+				file.xr[p] = pixelCalib.Xr;
+				file.yr[p] = pixelCalib.Yr;
+				if (pixelCalib.gripperBody)
+					CalibrationFile.set(file.gripperBody, p);
+				if (pixelCalib.gripperHole)
+					CalibrationFile.set(file.gripperHole, p);
+			}
+		return file;
+	}
+
 	@Override
 	public float getCameraXr() {
 		return CAMERA_X;
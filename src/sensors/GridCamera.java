@@ -1,101 +1,345 @@
 package sensors;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 
+import org.jbox2d.callbacks.DebugDraw;
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.Transform;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.Fixture;
 
 import sensors.Calibration.CalibDataPerPixel;
-import sensors.OCamCalibration.ExtraDataPerPixel;
 import arena.Arena;
-import arena.Settings;
+import arena.BodyGrid;
+import arena.Enclosure;
+import arena.HiddenFixture;
 
 /**
  * Camera for simulation, based on GridCalibration.
- * 
+ *
+ * Rather than probing the world separately for each pixel, the whole image is
+ * rendered at once.  The ground-plane positions of all visible pixels are
+ * transformed into world coordinates in a single pass and bucketed into a
+ * small grid.  Then each fixture of each body near the robot is tested only
+ * against the pixels in the buckets that its AABB overlaps.  Bodies and
+ * fixtures are processed in the order of the world's body list, and a pixel
+ * keeps the first hit, so the image is identical to that obtained by
+ * applying a PointSensor at every pixel.
+ *
  * @author av
  */
 public class GridCamera implements Sensor {
-	
+
 	Arena arena;
+	Body robotBody;
+	Enclosure enclosure;
+	BodyGrid bodyGrid;
 
 	public static final char SLASH = File.separatorChar;
 	//public static final String CALIB_DIR = System.getProperty("user.home") + SLASH + "av_work" + SLASH + "data" + SLASH + "srv1" + SLASH + "grid_calib";
 	public static final String CALIB_DIR = "data" + SLASH + "srv1" + SLASH + "grid_calib";
-	private GridCalibration calib = new GridCalibration(CALIB_DIR + SLASH + "192.168.0.114", 160, 120);
-	
-	private int imageWidth = calib.getImageWidth();
-	private int imageHeight = calib.getImageHeight();
-
-	private PointSensor[][] pSensors = new PointSensor[imageWidth][imageHeight];
+	private GridCalibration calib = GridCalibration.get(CALIB_DIR + SLASH + "192.168.0.114", 160, 120);
 
 	private STCameraImage image = new STCameraImage(calib);
 
+	// Side length of the buckets used to group pixels in world coordinates.
+	public static final float BUCKET_SIZE = 2f;
+	private static final float INV_BUCKET_SIZE = 1f / BUCKET_SIZE;
+
+	// The visible pixels (i.e. calibrated and not part of the gripper's body).
+	// For pixel p, (pixelX[p], pixelY[p]) are its image coordinates and
+	// (xr[p], yr[p]) are its ground-plane coordinates w.r.t. the robot.
+	// pixelIndex[p] is its index into the image data.  These arrays are
+	// shared by all cameras with the same calibration and are not modified.
+	private int nPixels;
+	private int[] pixelX, pixelY, pixelIndex;
+	private float[] xr, yr;
+
+	private static class VisiblePixels {
+		int n;
+		int[] x, y, index;
+		float[] xr, yr;
+	}
+
+	private static IdentityHashMap<GridCalibration, VisiblePixels> visiblePixelsCache =
+			new IdentityHashMap<GridCalibration, VisiblePixels>();
+
+	// World coordinates of each pixel, computed at the start of each 'sense'.
+	private float[] gx, gy;
+
+	// Set once a pixel's type has been determined in the current 'sense'.
+	private boolean[] resolved;
+
+	// Pixels grouped by bucket: the pixels in bucket b are given by
+	// bucketPixels[bucketStart[b]] ... bucketPixels[bucketStart[b+1] - 1].
+	private float bucketMinX, bucketMinY;
+	private int nBucketCols, nBucketRows;
+	private int[] bucketStart = new int[1];
+	private int[] bucketCursor = new int[0];
+	private int[] bucketPixels;
+	private int[] pixelBucket;
+
+	// Bodies in the vicinity of the robot and associated scratch space.
+	private Body[] candidates = new Body[0];
+	private boolean[] candidateMarks = new boolean[0];
+
+	private final Vec2 local = new Vec2();
+	private final Vec2 global = new Vec2();
+
 	public GridCamera(Body robotBody, Arena arena) {
+		reset(robotBody, arena);
+
+		VisiblePixels visible = getVisiblePixels(calib);
+		nPixels = visible.n;
+		pixelX = visible.x;
+		pixelY = visible.y;
+		pixelIndex = visible.index;
+		xr = visible.xr;
+		yr = visible.yr;
+
+		gx = new float[nPixels];
+		gy = new float[nPixels];
+		resolved = new boolean[nPixels];
+		bucketPixels = new int[nPixels];
+		pixelBucket = new int[nPixels];
+	}
+
+	/**
+	 * Attach this camera to the given robot body and arena.  The buffers are
+	 * kept, so a camera can be moved to a new robot without allocation.
+	 */
+	public void reset(Body robotBody, Arena arena) {
 		this.arena = arena;
-		
-		// Create PointSensors. Leave invisible areas as null.
+		this.robotBody = robotBody;
+		this.enclosure = arena.getEnclosure();
+		this.bodyGrid = arena.getBodyGrid();
+	}
+
+	/**
+	 * Drop all references to the robot body, its arena and the bodies seen
+	 * in the last image.
+	 */
+	public void release() {
+		arena = null;
+		robotBody = null;
+		enclosure = null;
+		bodyGrid = null;
+		Arrays.fill(candidates, null);
+	}
+
+	/**
+	 * Flatten the calibration for the visible pixels, or return the result
+	 * of having done so before.
+	 */
+	private static synchronized VisiblePixels getVisiblePixels(GridCalibration calib) {
+		VisiblePixels visible = visiblePixelsCache.get(calib);
+		if (visible != null)
+			return visible;
+
+		int imageWidth = calib.getImageWidth();
+		int imageHeight = calib.getImageHeight();
+		visible = new VisiblePixels();
 		for (int y = 0; y < imageHeight; y++)
 			for (int x = 0; x < imageWidth; x++) {
-				CalibDataPerPixel pixelData = calib.getCalibData(x, y);
-				if (pixelData != null) {
-					pSensors[x][y] = new PointSensor(
-							new Vec2(pixelData.Xr, pixelData.Yr), robotBody, arena);
+				CalibDataPerPixel pixelCalib = calib.getCalibData(x, y);
+				if (pixelCalib != null && !pixelCalib.gripperBody)
+					visible.n++;
+			}
+		visible.x = new int[visible.n];
+		visible.y = new int[visible.n];
+		visible.index = new int[visible.n];
+		visible.xr = new float[visible.n];
+		visible.yr = new float[visible.n];
+		int p = 0;
+		for (int y = 0; y < imageHeight; y++)
+			for (int x = 0; x < imageWidth; x++) {
+				CalibDataPerPixel pixelCalib = calib.getCalibData(x, y);
+				if (pixelCalib != null && !pixelCalib.gripperBody) {
+					visible.x[p] = x;
+					visible.y[p] = y;
+					visible.index[p] = y * imageWidth + x;
+					visible.xr[p] = pixelCalib.Xr;
+					visible.yr[p] = pixelCalib.Yr;
+					p++;
 				}
-			}		
+			}
+		visiblePixelsCache.put(calib, visible);
+		return visible;
 	}
 
 	public void sense() {
-		// Reset all image pixels to NOTHING.
-		for (int yp = 0; yp < imageHeight; yp++) {
-			for (int xp = 0; xp < imageWidth; xp++) {
-				image.pixels[xp][yp] = SensedType.NOTHING;
+		// Reset all image pixels to HIDDEN.  Those which are visible are all
+		// overwritten below.
+		image.setAll(SensedType.HIDDEN);
+
+		if (nPixels == 0)
+			return;
+
+		transformPixels();
+		if (nBucketCols == 0)
+			return;
+
+		// Gather the bodies which could possibly be seen.
+		int nBodies = bodyGrid.getBodyCount();
+		if (candidates.length < nBodies) {
+			candidates = new Body[nBodies];
+			candidateMarks = new boolean[nBodies];
+		}
+		float maxX = bucketMinX + nBucketCols * BUCKET_SIZE;
+		float maxY = bucketMinY + nBucketRows * BUCKET_SIZE;
+		int nCandidates = bodyGrid.getBodiesOverlapping(bucketMinX, bucketMinY,
+				maxX, maxY, candidateMarks, candidates);
+
+		for (int n = 0; n < nCandidates; n++) {
+			Body b = candidates[n];
+			if (b == robotBody)
+				// The camera should not detect the robot's body.
+				continue;
+			for (Fixture f = b.getFixtureList(); f != null; f = f.getNext()) {
+				Object userData = f.getUserData();
+				if (!(userData instanceof HiddenFixture))
+					renderFixture(b, f, PointSensor.getSensedType(userData));
+			}
+		}
+
+		// Pixels which have not been hit see nothing.
+		byte[] data = image.data;
+		byte nothing = STImage.code(SensedType.NOTHING);
+		for (int p = 0; p < nPixels; p++) {
+			if (!resolved[p])
+				data[pixelIndex[p]] = nothing;
+
+			// Only pucks can be sensed in the gripper hole, but unlike
+			// OCamCamera we do not hide anything else there.  Also, we
+			// cannot really simulate 3D.
+		}
+
+		//image.preprocess();
+	}
+
+	/**
+	 * Compute the world coordinates of all pixels.  Those which lie outside
+	 * the enclosure are considered WALL and are resolved immediately.  The
+	 * remaining pixels are then grouped into square buckets covering their
+	 * world coordinates.
+	 */
+	private void transformPixels() {
+		Transform T = robotBody.getTransform();
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		byte[] data = image.data;
+		byte wall = STImage.code(SensedType.WALL);
+		for (int p = 0; p < nPixels; p++) {
+			local.x = xr[p];
+			local.y = yr[p];
+			Transform.mulToOut(T, local, global);
+			gx[p] = global.x;
+			gy[p] = global.y;
+
+			if (enclosure.inFreeSpace(global, 0)) {
+				resolved[p] = false;
+				if (global.x < minX) minX = global.x;
+				if (global.x > maxX) maxX = global.x;
+				if (global.y < minY) minY = global.y;
+				if (global.y > maxY) maxY = global.y;
+			} else {
+				resolved[p] = true;
+				data[pixelIndex[p]] = wall;
 			}
 		}
 
-		for (int yp = 0; yp < imageHeight; yp++) {
-			for (int xp = 0; xp < imageWidth; xp++) {
-				CalibDataPerPixel pixelCalib = calib.getCalibData(xp, yp);
-				
-				if (pixelCalib == null || pixelCalib.gripperBody)
-					image.pixels[xp][yp] = SensedType.HIDDEN;
-				else {
-					PointSensor sensor = pSensors[xp][yp];
-					if (sensor == null)
+		if (minX > maxX) {
+			// Every pixel sees the wall.
+			nBucketCols = nBucketRows = 0;
+			return;
+		}
+		bucketMinX = minX;
+		bucketMinY = minY;
+		nBucketCols = (int) ((maxX - minX) * INV_BUCKET_SIZE) + 1;
+		nBucketRows = (int) ((maxY - minY) * INV_BUCKET_SIZE) + 1;
+		int nBuckets = nBucketCols * nBucketRows;
+		if (bucketStart.length < nBuckets + 1) {
+			bucketStart = new int[nBuckets + 1];
+			bucketCursor = new int[nBuckets];
+		}
+
+		// Count, convert counts to offsets, then fill.
+		Arrays.fill(bucketStart, 0, nBuckets + 1, 0);
+		for (int p = 0; p < nPixels; p++)
+			if (!resolved[p]) {
+				int i = (int) ((gx[p] - minX) * INV_BUCKET_SIZE);
+				int j = (int) ((gy[p] - minY) * INV_BUCKET_SIZE);
+				pixelBucket[p] = j * nBucketCols + i;
+				bucketStart[pixelBucket[p] + 1]++;
+			}
+		for (int b = 0; b < nBuckets; b++) {
+			bucketStart[b + 1] += bucketStart[b];
+			bucketCursor[b] = bucketStart[b];
+		}
+		for (int p = 0; p < nPixels; p++)
+			if (!resolved[p])
+				bucketPixels[bucketCursor[pixelBucket[p]]++] = p;
+	}
+
+	/**
+	 * Test the given fixture of body 'b' against all unresolved pixels in the
+	 * buckets overlapped by the fixture's AABB.  Those hit are set to 'type'.
+	 * The tests applied are the same as those in PointSensor.
+	 */
+	private void renderFixture(Body b, Fixture f, SensedType type) {
+		float lowerX = f.getAABB().lowerBound.x, lowerY = f.getAABB().lowerBound.y;
+		float upperX = f.getAABB().upperBound.x, upperY = f.getAABB().upperBound.y;
+		if (upperX < bucketMinX || upperY < bucketMinY)
+			return;
+		int i0 = Math.max(0, (int) ((lowerX - bucketMinX) * INV_BUCKET_SIZE));
+		int j0 = Math.max(0, (int) ((lowerY - bucketMinY) * INV_BUCKET_SIZE));
+		int i1 = Math.min(nBucketCols - 1, (int) ((upperX - bucketMinX) * INV_BUCKET_SIZE));
+		int j1 = Math.min(nBucketRows - 1, (int) ((upperY - bucketMinY) * INV_BUCKET_SIZE));
+
+		Vec2 bodyPos = b.getPosition();
+		Transform bodyT = b.getTransform();
+		byte[] data = image.data;
+		byte code = STImage.code(type);
+		for (int j = j0; j <= j1; j++)
+			for (int i = i0; i <= i1; i++) {
+				int bucket = j * nBucketCols + i;
+				int end = bucketStart[bucket + 1];
+				for (int n = bucketStart[bucket]; n < end; n++) {
+					int p = bucketPixels[n];
+					if (resolved[p])
+						continue;
+					float x = gx[p], y = gy[p];
+					if (x > upperX || x < lowerX || y > upperY || y < lowerY)
 						continue;
-					
-					sensor.sense();
-					SensedType type = sensor.getSensedType();
-					image.pixels[xp][yp] = type;
-					
-					if (pixelCalib.gripperHole && !SensedType.isPuckType(type)) {
-						// Only pucks can be sensed in the gripper.
-						//image.pixels[xp][yp] = SensedType.HIDDEN;
+					global.x = x;
+					global.y = y;
+					if (MathUtils.distanceSquared(bodyPos, global) > PointSensor.RADIUS_OF_LARGEST_OBJECT_SQD)
 						continue;
+					if (f.getShape().testPoint(bodyT, global)) {
+						resolved[p] = true;
+						data[pixelIndex[p]] = code;
 					}
-
-					// Unlike OCamCamera, we cannot really simulate 3D
 				}
 			}
-		}
-		
-		//image.preprocess();
 	}
 
 	public STCameraImage getImage() {
 		return image;
 	}
-	
+
 	public void draw() {
 		if (arena.showCamera) {
-			// Draw the PointSensors
-			for (int yp = 0; yp < imageHeight; yp+=5) {
-				for (int xp = 0; xp < imageWidth; xp+=5) {
-					CalibDataPerPixel pixelCalib = calib.getCalibData(xp, yp);
-					if (pixelCalib != null && pSensors[xp][yp] != null) {
-						pSensors[xp][yp].draw();
-					}
-				}
+			// Draw every fifth pixel at its ground-plane position.
+			DebugDraw debugDraw = arena.getDebugDraw();
+			for (int p = 0; p < nPixels; p++) {
+				if (pixelX[p] % 5 != 0 || pixelY[p] % 5 != 0)
+					continue;
+				Vec2 globalPos = Transform.mul(robotBody.getTransform(), new Vec2(xr[p], yr[p]));
+				debugDraw.drawSolidCircle(globalPos, 0.2f, null,
+						image.get(pixelX[p], pixelY[p]).color3f);
 			}
 		}
 	}
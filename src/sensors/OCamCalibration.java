@@ -4,6 +4,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Scanner;
 
 import javax.imageio.ImageIO;
@@ -76,10 +77,51 @@ public class OCamCalibration implements Calibration {
 	// The maximum distance (squared) of feasible clusters
 	public static int MAX_CLUSTER_DISTANCE_SQD = (int) Math.pow(40, 2);
 
+	// Calibrations loaded so far, keyed by directory.
+	private static HashMap<String, OCamCalibration> cache = new HashMap<String, OCamCalibration>();
+
+	/**
+	 * Return the calibration stored in the given directory, loading it only
+	 * if it has not been loaded before.  The calibration is shared and must
+	 * not be modified.
+	 */
+	public static synchronized OCamCalibration get(String dir) {
+		String key = new File(dir).getAbsolutePath();
+		OCamCalibration calib = cache.get(key);
+		if (calib == null) {
+			calib = new OCamCalibration(dir);
+			cache.put(key, calib);
+		}
+		return calib;
+	}
+
 	/**
 	 * Construct from the calibration files stored in the given directory.
+	 * If a precompiled binary form of these files exists (see
+	 * CalibrationCompiler) it is loaded instead.
 	 */
 	public OCamCalibration(String dir) {
+		this(dir, true);
+	}
+
+	/**
+	 * Construct from the calibration files stored in the given directory,
+	 * using the binary form (if it exists) only if 'useBinary' is true.
+	 */
+	OCamCalibration(String dir, boolean useBinary) {
+		CalibrationFile file = null;
+		if (useBinary)
+			file = CalibrationFile.read(CalibrationFile.getOCamFilename(dir),
+					CalibrationFile.getOCamSources(dir),
+					CalibrationFile.OCAM, IMAGE_WIDTH, IMAGE_HEIGHT);
+		if (file != null)
+			load(file);
+		else
+			loadText(dir);
+		computeDerivedData();
+	}
+
+	private void loadText(String dir) {
 
 		// Reading the data from 'srvCalibration.txt' into calibData. This
 		// file specifies the intersection point of each pixel ray with the
@@ -154,7 +196,73 @@ public class OCamCalibration implements Calibration {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-				
+	}
+
+	private void load(CalibrationFile file) {
+		for (int i=0; i<IMAGE_WIDTH; i++)
+			for (int j=0; j<IMAGE_HEIGHT; j++) {
+				int p = file.index(i, j);
+				if (!CalibrationFile.get(file.calibrated, p))
+					continue;
+				CalibDataPerPixel pixelCalib = calibData[i][j] = new CalibDataPerPixel();
+				ExtraDataPerPixel pixelExtra = extraData[i][j] = new ExtraDataPerPixel();
+				pixelCalib.Xr = file.xr[p];
+				pixelCalib.Yr = file.yr[p];
+				pixelCalib.gripperBody = CalibrationFile.get(file.gripperBody, p);
+				pixelCalib.gripperHole = CalibrationFile.get(file.gripperHole, p);
+				if (pixelCalib.gripperHole)
+					nHolePixels++;
+				pixelExtra.masked = CalibrationFile.get(file.masked, p);
+				pixelExtra.robotHeight = file.robotHeight[p];
+				pixelExtra.puckHeight = file.puckHeight[p];
+				pixelExtra.avoidWallLeft = CalibrationFile.get(file.avoidWallLeft, p);
+				pixelExtra.avoidWallRight = CalibrationFile.get(file.avoidWallRight, p);
+				pixelExtra.avoidOtherRobotLeft = CalibrationFile.get(file.avoidOtherRobotLeft, p);
+				pixelExtra.avoidOtherRobotRight = CalibrationFile.get(file.avoidOtherRobotRight, p);
+				pixelExtra.unreachable = CalibrationFile.get(file.unreachable, p);
+				pixelExtra.groundArea = file.groundArea[p];
+			}
+	}
+
+	/**
+	 * Return the binary form of this calibration.
+	 */
+	CalibrationFile toFile() {
+		CalibrationFile file = new CalibrationFile(CalibrationFile.OCAM, IMAGE_WIDTH, IMAGE_HEIGHT);
+		for (int i=0; i<IMAGE_WIDTH; i++)
+			for (int j=0; j<IMAGE_HEIGHT; j++) {
+				CalibDataPerPixel pixelCalib = calibData[i][j];
+				ExtraDataPerPixel pixelExtra = extraData[i][j];
+				if (pixelCalib == null)
+					continue;
+				int p = file.index(i, j);
+				CalibrationFile.set(file.calibrated, p);
+				file.xr[p] = pixelCalib.Xr;
+				file.yr[p] = pixelCalib.Yr;
+				if (pixelCalib.gripperBody)
+					CalibrationFile.set(file.gripperBody, p);
+				if (pixelCalib.gripperHole)
+					CalibrationFile.set(file.gripperHole, p);
+				if (pixelExtra.masked)
+					CalibrationFile.set(file.masked, p);
+				file.robotHeight[p] = pixelExtra.robotHeight;
+				file.puckHeight[p] = pixelExtra.puckHeight;
+				if (pixelExtra.avoidWallLeft)
+					CalibrationFile.set(file.avoidWallLeft, p);
+				if (pixelExtra.avoidWallRight)
+					CalibrationFile.set(file.avoidWallRight, p);
+				if (pixelExtra.avoidOtherRobotLeft)
+					CalibrationFile.set(file.avoidOtherRobotLeft, p);
+				if (pixelExtra.avoidOtherRobotRight)
+					CalibrationFile.set(file.avoidOtherRobotRight, p);
+				if (pixelExtra.unreachable)
+					CalibrationFile.set(file.unreachable, p);
+				file.groundArea[p] = pixelExtra.groundArea;
+			}
+		return file;
+	}
+
+	private void computeDerivedData() {
 		// Choose the meridian as the image column where Yr goes from positive
 		// to negative.  We assume it is vertical (it appears to be) and therefore
 		// just search for this point along the image row 3/4 down from the top.
@@ -19,7 +19,7 @@ public class OCamCamera implements Sensor {
 
 	public static final char SLASH = File.separatorChar;
 	public static final String CALIB_DIR = System.getProperty("user.home") + SLASH + "work" + SLASH + "data" + SLASH + "srv1" + SLASH + "ocam_calib";
-	private OCamCalibration calib = new OCamCalibration(CALIB_DIR + SLASH + "192.168.0.111");
+	private OCamCalibration calib = OCamCalibration.get(CALIB_DIR + SLASH + "192.168.0.111");
 	
 	private int imageWidth = calib.getImageWidth();
 	private int imageHeight = calib.getImageHeight();
@@ -67,11 +67,7 @@ public class OCamCamera implements Sensor {
 
 	public void sense() {
 		// Reset all image pixels to WALL.
-		for (int yp = 0; yp < imageHeight; yp++) {
-			for (int xp = 0; xp < imageWidth; xp++) {
-				image.pixels[xp][yp] = SensedType.NOTHING;
-			}
-		}
+		image.setAll(SensedType.NOTHING);
 
 		for (int yp = 0; yp < imageHeight; yp++) {
 			for (int xp = 0; xp < imageWidth; xp++) {
@@ -79,7 +75,7 @@ public class OCamCamera implements Sensor {
 				ExtraDataPerPixel pixelExtra = calib.getExtraData(xp, yp);
 				
 				if (pixelCalib == null || pixelExtra.masked || pixelCalib.gripperBody)
-					image.pixels[xp][yp] = SensedType.HIDDEN;
+					image.set(xp, yp, SensedType.HIDDEN);
 				else {
 					PointSensor sensor = pSensors[xp][yp];
 					if (sensor == null)
@@ -87,11 +83,11 @@ public class OCamCamera implements Sensor {
 					
 					sensor.sense();
 					SensedType type = sensor.getSensedType();
-					image.pixels[xp][yp] = type;
+					image.set(xp, yp, type);
 					
 					if (pixelCalib.gripperHole && !SensedType.isPuckType(type)) {
 						// Only pucks can be sensed in the gripper.
-						image.pixels[xp][yp] = SensedType.HIDDEN;
+						image.set(xp, yp, SensedType.HIDDEN);
 						continue;
 					}
 
@@ -101,11 +97,11 @@ public class OCamCamera implements Sensor {
 							&& pixelExtra.robotHeight > 0) {
 						for (int dy = yp - 1; yp - dy <= pixelExtra.robotHeight
 								&& dy >= 0; dy--)
-							image.pixels[xp][dy] = type;
+							image.set(xp, dy, type);
 					} else if (SensedType.isPuckType(type) && pixelExtra.puckHeight > 0) {
 						for (int dy = yp - 1; yp - dy <= pixelExtra.puckHeight
 								&& dy >= 0; dy--)
-							image.pixels[xp][dy] = type;
+							image.set(xp, dy, type);
 					}
 				}
 			}
@@ -70,7 +70,7 @@ public class Odometer implements Localizer, LocalizerUpdater {
 		this.robotTransform = robotTransform;
 		this.arena = arena;
 		this.debugDraw = arena.getDebugDraw();
-		random = ExperimentManager.getCurrent().getRandom();
+		random = ExperimentManager.getCurrent().getRandom("Odometer");
 		
 		lastTruePosition = robotTransform.position.clone();
 		
@@ -11,6 +11,7 @@ import org.jbox2d.dynamics.Fixture;
 import org.jbox2d.dynamics.World;
 
 import arena.Arena;
+import arena.BodyGrid;
 import arena.DotPuck;
 import arena.Enclosure;
 import arena.HiddenFixture;
@@ -23,6 +24,7 @@ public class PointSensor implements Sensor {
 	Body robotBody;
 	Enclosure enclosure;
 	World world;
+	BodyGrid bodyGrid;
 	DebugDraw debugDraw;
 		
 	boolean useSegmentSampling;
@@ -39,6 +41,11 @@ public class PointSensor implements Sensor {
 	
 	public static final float RADIUS_OF_LARGEST_OBJECT_SQD = Robot.SRV_LENGTH * Robot.SRV_LENGTH;
 
+	// If true, only the bodies registered in the arena's BodyGrid cell for this
+	// sensor are tested.  Otherwise the whole body list is walked (only useful
+	// for benchmarking).
+	public static boolean USE_BODY_GRID = true;
+
 	/**
 	 * Plain constructor.  Segment sampling will not be used.
 	 */
@@ -47,6 +54,7 @@ public class PointSensor implements Sensor {
 		this.robotBody = robotBody;
 		this.enclosure = arena.getEnclosure();
 		this.world = arena.getWorld();
+		this.bodyGrid = arena.getBodyGrid();
 		this.debugDraw = arena.getDebugDraw();
 	}
 		
@@ -92,25 +100,46 @@ public class PointSensor implements Sensor {
 		}
 
 		sensedType = SensedType.NOTHING;
-		for (Body b = world.getBodyList(); b != null; b = b.getNext()) {
-			// The sensor should not detect the robot's body.  Also, we add a
-			// quick test of distance to improve efficiency.
-			if (b == robotBody ||
-				MathUtils.distanceSquared(b.getPosition(), globalPos) > RADIUS_OF_LARGEST_OBJECT_SQD)
-				continue;
-			for (Fixture f = b.getFixtureList(); f != null; f = f.getNext()) {
-				// We first test for overlap of the sensor point and the AABB
-				// for the fixture.  Only if that is successful do we do the
-				// more expensive, but accurate test.
-				Object userData = f.getUserData();
-				if (!(userData instanceof HiddenFixture) &&
-					possibleOverlap(f.getAABB()) &&
-					f.getShape().testPoint(b.getTransform(), globalPos)) {
-					setSensedType(userData);
+		if (USE_BODY_GRID) {
+			// Only the bodies whose fixture AABBs overlap this cell can contain
+			// the sensor's position.
+			int cell = bodyGrid.getCell(globalPos.x, globalPos.y);
+			if (cell == -1)
+				return;
+			int end = bodyGrid.getCellEnd(cell);
+			for (int n = bodyGrid.getCellStart(cell); n < end; n++)
+				if (senseBody(bodyGrid.getEntry(n)))
+					return;
+		} else {
+			for (Body b = world.getBodyList(); b != null; b = b.getNext())
+				if (senseBody(b))
 					return;
-				}
+		}
+	}
+
+	/**
+	 * Test the sensor's current global position against the given body.  If
+	 * it is hit, set sensedType and return true.
+	 */
+	private boolean senseBody(Body b) {
+		// The sensor should not detect the robot's body.  Also, we add a
+		// quick test of distance to improve efficiency.
+		if (b == robotBody ||
+			MathUtils.distanceSquared(b.getPosition(), globalPos) > RADIUS_OF_LARGEST_OBJECT_SQD)
+			return false;
+		for (Fixture f = b.getFixtureList(); f != null; f = f.getNext()) {
+			// We first test for overlap of the sensor point and the AABB
+			// for the fixture.  Only if that is successful do we do the
+			// more expensive, but accurate test.
+			Object userData = f.getUserData();
+			if (!(userData instanceof HiddenFixture) &&
+				possibleOverlap(f.getAABB()) &&
+				f.getShape().testPoint(b.getTransform(), globalPos)) {
+				setSensedType(userData);
+				return true;
 			}
 		}
+		return false;
 	}
 	
 	public boolean possibleOverlap(final AABB aabb) {
@@ -175,16 +204,25 @@ public class PointSensor implements Sensor {
 
 	// We have hit something. Determine and return its type.
 	private void setSensedType(Object userData) {
+		sensedType = getSensedType(userData);
+	}
+
+	/**
+	 * The SensedType of a fixture hit by a sensor, given the fixture's
+	 * userData.
+	 */
+	static SensedType getSensedType(Object userData) {
 		if (userData == null) {
-			sensedType = SensedType.WALL;
+			return SensedType.WALL;
 		} else if (userData instanceof Puck) {
-			sensedType = ((Puck) userData).getPuckType();
+			return ((Puck) userData).getPuckType();
 		} else if (userData instanceof Robot) {
-			sensedType = SensedType.ROBOT;
+			return SensedType.ROBOT;
 		} 
 //		else if (userData instanceof HiddenFixture) {
 //			sensedType = SensedType.NOTHING;
 //		}
+		return SensedType.NOTHING;
 	}
 	
 	public SensedType getSensedType() {
@@ -0,0 +1,61 @@
+package sensors;
+
+import experiment.Experiment;
+
+/**
+ * The puck colours present in an experiment.  An arena with Arena.nPuckTypes
+ * types of puck only ever contains the first nPuckTypes colours of
+ * SensedType.puckTypes, so the palette is that prefix.  The index of a colour
+ * within the palette is therefore its puck index (as used by Cluster.puckType
+ * and the arrays held by the controllers), and code which processes each
+ * colour in turn can stop at 'size' rather than SensedType.NPUCK_COLOURS.
+ * This keeps the cost of processing an experiment independent of the number
+ * of colours defined in SensedType.
+ *
+ * The palette does not define colours of its own: pucks, pixels and the
+ * controllers all identify a colour by its SensedType, so Arena.nPuckTypes
+ * cannot exceed SensedType.NPUCK_COLOURS.  To use more colours, add them to
+ * SensedType (before NOTHING) and to SensedType.puckTypes.
+ */
+public class PuckPalette {
+
+	// The palette of every defined colour.
+	private static final PuckPalette ALL = new PuckPalette(SensedType.NPUCK_COLOURS);
+
+	private final SensedType[] types;
+
+	public PuckPalette(int size) {
+		if (size < 1 || size > SensedType.NPUCK_COLOURS) {
+			System.err.println("PuckPalette: Between 1 and " + SensedType.NPUCK_COLOURS
+					+ " puck colours are available!");
+			System.exit(-1);
+		}
+		types = new SensedType[size];
+		for (int k=0; k<size; k++)
+			types[k] = SensedType.getPuckType(k);
+	}
+
+	/**
+	 * Return the palette of the given experiment, as set by Arena.nPuckTypes.
+	 */
+	public static PuckPalette create(Experiment e) {
+		int nPuckTypes = e.getProperty("Arena.nPuckTypes", 2, null);
+		return nPuckTypes == SensedType.NPUCK_COLOURS ? ALL : new PuckPalette(nPuckTypes);
+	}
+
+	public int size() {
+		return types.length;
+	}
+
+	public SensedType getType(int k) {
+		return types[k];
+	}
+
+	/**
+	 * Return the colours of the palette in order.  The array is shared and
+	 * must not be modified.
+	 */
+	public SensedType[] getTypes() {
+		return types;
+	}
+}
@@ -31,9 +31,9 @@ public class STCameraImage extends STImage /* implements PropertiesListener */{
 			for (int i=0; i<width; i++) {
 				CalibDataPerPixel pixelCalib = calib.getCalibData(i, j);
 				if (pixelCalib == null || pixelCalib.gripperBody)
-					pixels[i][j] = SensedType.HIDDEN;
+					set(i, j, SensedType.HIDDEN);
 				else
-					pixels[i][j] = SensedType.NOTHING;
+					set(i, j, SensedType.NOTHING);
 			}
 
 		//propertiesUpdated();
@@ -65,7 +65,7 @@ public class STCameraImage extends STImage /* implements PropertiesListener */{
 			for (int j=0; j<height; j++)
 				for (int i=0; i<width; i++) {
 					CalibDataPerPixel pixelCalib = calib.getCalibData(i, j);
-					if (pixelCalib !=pixelCalib.gripperHole && pixels[i][j] == puckType)
+					if (pixelCalib !=pixelCalib.gripperHole && get(i, j) == puckType)
 						sum++;
 				}
 			
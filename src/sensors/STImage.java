@@ -1,50 +1,111 @@
 package sensors;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * A 2-D matrix of SensedType values.
+ * A 2-D matrix of SensedType values.  The values are stored compactly in the
+ * flat array 'data' as the ordinal of each SensedType, in row-major order.
+ * Pixel (i, j) is therefore at data[j*width + i].  Code that scans whole
+ * images may read and write 'data' directly (using 'code' and 'typeOf' to
+ * convert), while 'get' and 'set' are convenient for individual pixels.
  */
 public class STImage {
 	public int width;
 	public int height;
-	public SensedType[][] pixels;
-	
+	public byte[] data;
+
 	ArrayList<Overlay> overlays = new ArrayList<Overlay>();
 
+	// All SensedTypes, indexed by ordinal.
+	private static final SensedType[] TYPES = SensedType.values();
+
 	public STImage(int width, int height) {
+		this(width, height, new byte[width * height]);
+		setAll(SensedType.NOTHING);
+	}
+
+	/**
+	 * Create an image which views the given array, without copying it.  Any
+	 * change to the image is seen in the array and vice versa.
+	 */
+	public STImage(int width, int height, byte[] data) {
+		if (data.length != width * height) {
+			System.err.println("STImage: Data does not match image size!");
+			System.exit(-1);
+		}
 		this.width = width;
 		this.height = height;
-		pixels = new SensedType[width][height];
-		for (int j=0; j<height; j++)
-			for (int i=0; i<width; i++)
-				pixels[i][j] = SensedType.NOTHING;
+		this.data = data;
 	}
 
 	@Override
 	public Object clone() {
-		STImage copy = new STImage(width, height);
-		for (int j=0; j<height; j++)
-			for (int i=0; i<width; i++)
-				copy.pixels[i][j] = pixels[i][j];
-		
+		STImage copy = new STImage(width, height, data.clone());
+
 		copy.overlays.addAll(overlays);
 		overlays.clear();
-		
+
 		return copy;
 	}
-	
+
+	/**
+	 * Return the byte stored in 'data' for the given type.
+	 */
+	public static byte code(SensedType type) {
+		return (byte) type.ordinal();
+	}
+
+	/**
+	 * Return the type for the given byte of 'data'.
+	 */
+	public static SensedType typeOf(byte code) {
+		return TYPES[code];
+	}
+
+	/**
+	 * Return true if the given byte of 'data' represents a puck.
+	 */
+	public static boolean isPuck(byte code) {
+		return code < SensedType.NPUCK_COLOURS;
+	}
+
+	public int index(int i, int j) {
+		return j*width + i;
+	}
+
+	public SensedType get(int i, int j) {
+		return TYPES[data[j*width + i]];
+	}
+
+	public void set(int i, int j, SensedType type) {
+		data[j*width + i] = (byte) type.ordinal();
+	}
+
 	/**
 	 * Add an overlay that will be displayed when the image is next drawn (it
 	 * will then be automatically removed).
-	 */	
+	 */
 	public void addOverlay(Overlay overlay) {
 		overlays.add(overlay);
 	}
 
+	public void clearOverlays() {
+		overlays.clear();
+	}
+
 	public void setAll(SensedType type) {
-		for (int j=0; j<height; j++)
-			for (int i=0; i<width; i++)
-				pixels[i][j] = type;
+		Arrays.fill(data, code(type));
+	}
+
+	/**
+	 * Copy all pixels from the given image, which must be of the same size.
+	 */
+	public void copyFrom(STImage other) {
+		if (other.width != width || other.height != height) {
+			System.err.println("STImage: Cannot copy image of different size!");
+			System.exit(-1);
+		}
+		System.arraycopy(other.data, 0, data, 0, data.length);
 	}
 }
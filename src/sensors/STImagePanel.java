@@ -39,9 +39,7 @@ public class STImagePanel extends JPanel {
 			public void run() {
 		    		if (image == null)
 		    			image = new STImage(inputImage.width, inputImage.height);
-		    		for (int i=0; i<image.width; i++)
-		    			for (int j=0; j<image.height; j++)
-		    				image.pixels[i][j] = inputImage.pixels[i][j];
+		    		image.copyFrom(inputImage);
 			}
 		});
     }
@@ -65,7 +63,7 @@ public class STImagePanel extends JPanel {
 		// Now fill in all grid entries
 		for (int i=0; i<image.width; i++)
 			for (int j=0; j<image.height; j++) {
-				SensedType value = image.pixels[i][j];
+				SensedType value = image.get(i, j);
 				g2d.setColor(value.color);
 				g2d.fillRect(i*cw, j*ch, cw, ch);
 			}
@@ -41,9 +41,6 @@ public class SimSuite implements Sensor, Suite {
 	Arena arena;
 	boolean enableDisplay;
 	
-	// Used for positioning image display JFrames.
-	public static int jframeY = 25;
-	
 	public SimSuite(final String name, Body body, Arena arena, boolean enableDisplay) {
 		this.name = name;
 		this.body = body;
@@ -54,7 +51,7 @@ public class SimSuite implements Sensor, Suite {
 		camera = new GridCamera(body, arena);
 		Calibration calib = camera.getImage().getCalibration();
 		
-		localMap = new LocalMap(calib);
+		localMap = new LocalMap(calib, arena.getPalette());
 		
 		aps = new SimAPS(body);
 
@@ -85,8 +82,8 @@ public class SimSuite implements Sensor, Suite {
 					
 					suiteFrame.pack();
 					suiteFrame.setVisible(true);
-					suiteFrame.setLocation(1595, jframeY);
-					jframeY += suiteFrame.getHeight();
+					suiteFrame.setLocation(1595, arena.suiteFrameY);
+					arena.suiteFrameY += suiteFrame.getHeight();
 				}
 			});
 		}
@@ -103,6 +100,37 @@ public class SimSuite implements Sensor, Suite {
 		localMap.update(camera.getImage());
 	}
 
+	/**
+	 * Prepare this suite for use by another robot, forgetting everything
+	 * sensed for the previous one.  The camera's buffers and the LocalMap
+	 * are kept.  Only suites without a display can be reused.
+	 */
+	public void reset(String name, Body body, Arena arena) {
+		this.name = name;
+		this.body = body;
+		this.arena = arena;
+		camera.reset(body, arena);
+		localMap.reset(arena.getPalette());
+		aps = new SimAPS(body);
+		localizerUpdaters.clear();
+	}
+
+	/**
+	 * Drop all references to the robot and its arena so that they can be
+	 * garbage collected while this suite awaits reuse.
+	 */
+	public void release() {
+		body = null;
+		arena = null;
+		camera.release();
+		aps = null;
+		localizerUpdaters.clear();
+	}
+
+	public boolean hasDisplay() {
+		return cameraPanel != null;
+	}
+
 	/* (non-Javadoc)
 	 * @see sensors.Suite#draw()
 	 */
@@ -126,7 +154,7 @@ public class SimSuite implements Sensor, Suite {
 	 */
 	@Override
 	public void dispose() {
-		if (enableDisplay)
+		if (suiteFrame != null)
 			suiteFrame.dispose();
 	}
 
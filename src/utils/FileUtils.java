@@ -53,6 +53,17 @@ public class FileUtils {
 		}
 	}
 	
+	/**
+	 * As saveArray, except that the file is written in the background by
+	 * OutputWriter.  The array may be modified once this returns.
+	 */
+	public static void saveArrayLater(int[] array, String filename) {
+		StringBuilder text = new StringBuilder();
+		for (int i=0; i<array.length; i++)
+			text.append(array[i]).append('\n');
+		OutputWriter.writeText(filename, text.toString());
+	}
+
 	/**
 	 * Load an array from the given text file (saved as one number per line
 	 * as by saveArray).
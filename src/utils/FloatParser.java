@@ -0,0 +1,110 @@
+package utils;
+
+/**
+ * Parses floats directly from bytes of text, giving exactly the same result
+ * as Float.parseFloat.  Values that are both short enough and of modest
+ * enough magnitude (which includes everything written by Float.toString
+ * for the positions we store) are converted with a single exact double
+ * operation.  Anything else is passed on to Float.parseFloat.
+ */
+public class FloatParser {
+
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	// Doubles below this magnitude would be subnormal as floats.
+	private static final double MIN_NORMAL_FLOAT = Float.MIN_NORMAL;
+
+	/**
+	 * Parse the float held in bytes [start, end) of 'text'.
+	 */
+	public static float parse(byte[] text, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (text[i] == '-' || text[i] == '+')) {
+			negative = text[i] == '-';
+			i++;
+		}
+
+		// Accumulate the significant digits in 'mantissa' with the value being
+		// mantissa * 10^exponent.
+		long mantissa = 0;
+		int nDigits = 0, exponent = 0;
+		boolean anyDigits = false, point = false;
+		for (; i < end; i++) {
+			byte c = text[i];
+			if (c >= '0' && c <= '9') {
+				anyDigits = true;
+				if (mantissa == 0 && c == '0') {
+					// Leading zeros are not significant.
+					if (point)
+						exponent--;
+					continue;
+				}
+				if (nDigits == 18)
+					return slowParse(text, start, end);
+				mantissa = 10 * mantissa + (c - '0');
+				nDigits++;
+				if (point)
+					exponent--;
+			} else if (c == '.' && !point)
+				point = true;
+			else
+				break;
+		}
+		if (!anyDigits)
+			return slowParse(text, start, end);
+
+		if (i < end) {
+			if (text[i] != 'E' && text[i] != 'e')
+				return slowParse(text, start, end);
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (text[i] == '-' || text[i] == '+')) {
+				negativeExponent = text[i] == '-';
+				i++;
+			}
+			if (i == end)
+				return slowParse(text, start, end);
+			int e = 0;
+			for (; i < end; i++) {
+				byte c = text[i];
+				if (c < '0' || c > '9' || e > 1000)
+					return slowParse(text, start, end);
+				e = 10 * e + (c - '0');
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+
+		if (mantissa == 0)
+			return negative ? -0f : 0f;
+
+		// With fewer than 19 digits the mantissa is exact as a double, as is
+		// the power of ten, so a single operation gives the correctly rounded
+		// double.
+		if (exponent < -22 || exponent > 22)
+			return slowParse(text, start, end);
+		double d = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] :
+								   mantissa / POWERS_OF_TEN[-exponent];
+		if (mantissa >= (1L << 53) || d < MIN_NORMAL_FLOAT || d > Float.MAX_VALUE)
+			return slowParse(text, start, end);
+
+		// Rounding the double to a float then gives the correctly rounded
+		// float, unless the double lies exactly halfway between two floats
+		// (in which case the decimal value may not have).
+		long bits = Double.doubleToRawLongBits(d);
+		if ((bits & ((1L << 29) - 1)) == (1L << 28))
+			return slowParse(text, start, end);
+		float f = (float) d;
+		return negative ? -f : f;
+	}
+
+	private static float slowParse(byte[] text, int start, int end) {
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++)
+			chars[i - start] = (char) text[i];
+		return Float.parseFloat(new String(chars));
+	}
+}
@@ -0,0 +1,104 @@
+package utils;
+
+/**
+ * A histogram of non-negative long values, such as durations in nanoseconds.
+ * Values below 8 have a bucket each.  Above that, each power of two is split
+ * into 8 buckets, so a value is known to within 12.5%.  Recording a value
+ * updates a few primitive fields and never allocates, so histograms can be
+ * left on in long runs.  Histograms are not thread-safe.
+ */
+public class Histogram {
+
+	// Buckets per power of two, as a number of bits.
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	public static final int N_BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	String name;
+	long[] counts = new long[N_BUCKETS];
+	long count, sum, min = Long.MAX_VALUE, max;
+
+	public Histogram(String name) {
+		this.name = name;
+	}
+
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[getBucket(value)]++;
+		count++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	static int getBucket(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Return the smallest value that falls in the given bucket.
+	 */
+	static long getBucketStart(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+	}
+
+	/**
+	 * Return an estimate of the value below which the given fraction of the
+	 * recorded values lie: the middle of the bucket holding it, limited to the
+	 * range of recorded values.
+	 */
+	public long getPercentile(double fraction) {
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * count);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int b = 0; b < N_BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= rank) {
+				long start = getBucketStart(b);
+				long end = b + 1 < N_BUCKETS ? getBucketStart(b + 1) : Long.MAX_VALUE;
+				long middle = start + (end - start) / 2;
+				return Math.max(min, Math.min(max, middle));
+			}
+		}
+		return max;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	public long getMin() {
+		return count > 0 ? min : 0;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count > 0 ? sum / (double) count : 0;
+	}
+}
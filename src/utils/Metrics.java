@@ -0,0 +1,131 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * A registry of the counters and histograms kept while running one arena.
+ * Counters and histograms are created once by name and then updated directly,
+ * so recording allocates nothing.  The time spent by robots in each state of
+ * their controllers can also be counted with 'recordState'.
+ *
+ * 'writeSnapshot' appends the current value of everything to a CSV file (in
+ * the background, via OutputWriter).  All values are cumulative, so the
+ * difference between two snapshots gives the activity in between.  The
+ * columns are:
+ *
+ *     step,name,count,sum,min,mean,p50,p90,p99,max
+ *
+ * For a counter only 'count' is filled in.  For a histogram of durations, the
+ * values are in nanoseconds.
+ */
+public class Metrics {
+
+	public static class Counter {
+		String name;
+		long count;
+
+		Counter(String name) {
+			this.name = name;
+		}
+
+		public void increment() {
+			count++;
+		}
+
+		public void add(long n) {
+			count += n;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+
+	public static final String HEADER = "step,name,count,sum,min,mean,p50,p90,p99,max";
+
+	ArrayList<Counter> counters = new ArrayList<Counter>();
+	ArrayList<Histogram> histograms = new ArrayList<Histogram>();
+
+	// Number of steps spent in each state, by the enum class of the states.
+	IdentityHashMap<Class<?>, long[]> stateCounts = new IdentityHashMap<Class<?>, long[]>();
+
+	// The file written by the last snapshot.
+	private String snapshotFilename;
+
+	/**
+	 * Return the counter with the given name, creating it if necessary.
+	 */
+	public Counter getCounter(String name) {
+		for (Counter c : counters)
+			if (c.name.equals(name))
+				return c;
+		Counter c = new Counter(name);
+		counters.add(c);
+		return c;
+	}
+
+	/**
+	 * Return the histogram with the given name, creating it if necessary.
+	 */
+	public Histogram getHistogram(String name) {
+		for (Histogram h : histograms)
+			if (h.name.equals(name))
+				return h;
+		Histogram h = new Histogram(name);
+		histograms.add(h);
+		return h;
+	}
+
+	/**
+	 * Count one step spent in the given state.
+	 */
+	public void recordState(Enum<?> state) {
+		Class<?> type = state.getDeclaringClass();
+		long[] counts = stateCounts.get(type);
+		if (counts == null) {
+			counts = new long[type.getEnumConstants().length];
+			stateCounts.put(type, counts);
+		}
+		counts[state.ordinal()]++;
+	}
+
+	/**
+	 * Append the current values to the given CSV file.  The file is created
+	 * (with a header) unless the last snapshot was written to it.
+	 */
+	public void writeSnapshot(final String filename, int step) {
+		final boolean create = !filename.equals(snapshotFilename);
+		snapshotFilename = filename;
+
+		final StringBuilder text = new StringBuilder();
+		for (Counter c : counters)
+			text.append(step + "," + c.name + "," + c.count + ",,,,,,,\n");
+		for (Histogram h : histograms)
+			text.append(step + "," + h.name + "," + h.count + "," + h.sum + "," + h.getMin() + ","
+					+ (float) h.getMean() + "," + h.getPercentile(0.5) + "," + h.getPercentile(0.9) + ","
+					+ h.getPercentile(0.99) + "," + h.max + "\n");
+		for (Class<?> type : stateCounts.keySet()) {
+			long[] counts = stateCounts.get(type);
+			Object[] states = type.getEnumConstants();
+			Class<?> owner = type.getEnclosingClass() != null ? type.getEnclosingClass() : type;
+			String prefix = "state:" + owner.getSimpleName() + ".";
+			for (int s = 0; s < counts.length; s++)
+				text.append(step + "," + prefix + states[s] + "," + counts[s] + ",,,,,,,\n");
+		}
+
+		OutputWriter.submit(new OutputWriter.Job() {
+			public void write() throws IOException {
+				BufferedWriter writer = new BufferedWriter(new FileWriter(new File(filename), !create));
+				if (create)
+					writer.write(HEADER + "\n");
+				writer.write(text.toString());
+				writer.close();
+			}
+		});
+	}
+}
@@ -0,0 +1,169 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Performs file output on a background thread so that the simulation never
+ * waits on the disk.  Output is submitted as Jobs which are placed on a
+ * bounded queue and executed in submission order (in batches of up to
+ * MAX_BATCH_SIZE) by a single writer thread.  Jobs writing to the same file
+ * are therefore never reordered.  A Job must not refer to data that the
+ * caller will subsequently modify---take a copy when submitting.
+ *
+ * If the queue is full, 'submit' blocks until the writer thread catches up.
+ * Call 'flush' to wait until everything submitted so far has been written
+ * (e.g. at the end of an experiment).  All pending output is also written when
+ * the JVM shuts down.
+ */
+public class OutputWriter {
+
+	public interface Job {
+		public void write() throws IOException;
+	}
+
+	// Maximum number of jobs waiting to be written.
+	public static int QUEUE_CAPACITY = 1024;
+
+	// Maximum number of jobs the writer thread takes from the queue at once.
+	public static int MAX_BATCH_SIZE = 64;
+
+	// How long to wait for pending output on shutdown.
+	public static long SHUTDOWN_TIMEOUT_MS = 10000;
+
+	private static ArrayBlockingQueue<Job> queue;
+
+	// Number of jobs submitted but not yet completed.
+	private static int pending;
+
+	// Number of times 'submit' had to wait for space on the queue.
+	private static int stallCount;
+
+	private static final Object lock = new Object();
+
+	/**
+	 * Queue the given job for writing.  Blocks if the queue is full.
+	 */
+	public static void submit(Job job) {
+		ArrayBlockingQueue<Job> q = getQueue();
+		synchronized (lock) {
+			pending++;
+		}
+		if (!q.offer(job)) {
+			synchronized (lock) {
+				stallCount++;
+			}
+			try {
+				q.put(job);
+			} catch (InterruptedException e) {
+				System.err.println("OutputWriter: Interrupted while submitting!");
+				System.exit(-1);
+			}
+		}
+	}
+
+	/**
+	 * Queue the given text to be written to the given file (replacing any
+	 * existing file).
+	 */
+	public static void writeText(final String filename, final String text) {
+		submit(new Job() {
+			public void write() throws IOException {
+				BufferedWriter out = new BufferedWriter(new FileWriter(filename));
+				out.write(text);
+				out.close();
+			}
+		});
+	}
+
+	/**
+	 * Block until all jobs submitted so far have been written.
+	 */
+	public static void flush() {
+		synchronized (lock) {
+			while (pending > 0) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					System.err.println("OutputWriter: Interrupted while flushing!");
+					System.exit(-1);
+				}
+			}
+		}
+	}
+
+	public static int getStallCount() {
+		synchronized (lock) {
+			return stallCount;
+		}
+	}
+
+	private static synchronized ArrayBlockingQueue<Job> getQueue() {
+		if (queue == null) {
+			queue = new ArrayBlockingQueue<Job>(QUEUE_CAPACITY);
+			Thread writer = new Thread(new Runnable() {
+				public void run() {
+					writeJobs();
+				}
+			}, "OutputWriter");
+			writer.setDaemon(true);
+			writer.start();
+
+			// Pending output is written on shutdown.  The wait is bounded in
+			// case the writer thread itself has called System.exit.
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					long end = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+					synchronized (lock) {
+						long remaining;
+						while (pending > 0 && (remaining = end - System.currentTimeMillis()) > 0) {
+							try {
+								lock.wait(remaining);
+							} catch (InterruptedException e) {
+								return;
+							}
+						}
+					}
+				}
+			});
+		}
+		return queue;
+	}
+
+	private static void writeJobs() {
+		ArrayList<Job> batch = new ArrayList<Job>(MAX_BATCH_SIZE);
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				System.err.println("OutputWriter: Writer thread interrupted!");
+				System.exit(-1);
+			}
+			queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+			for (Job job : batch) {
+				try {
+					job.write();
+				} catch (IOException e) {
+					System.err.println("OutputWriter: Problem writing: " + e.getMessage());
+					System.exit(-1);
+				} catch (RuntimeException e) {
+					// Otherwise the writer thread would die, leaving 'flush'
+					// to wait forever.
+					System.err.println("OutputWriter: Problem writing: " + e);
+					e.printStackTrace();
+					System.exit(-1);
+				}
+			}
+
+			synchronized (lock) {
+				pending -= batch.size();
+				lock.notifyAll();
+			}
+			batch.clear();
+		}
+	}
+}